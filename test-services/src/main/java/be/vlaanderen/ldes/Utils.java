@@ -1,5 +1,8 @@
 package be.vlaanderen.ldes;
 
+import be.vlaanderen.ldes.artifacts.ArtifactStore;
+import be.vlaanderen.ldes.http.HttpClientService;
+import be.vlaanderen.ldes.storage.DatasetStore;
 import com.gitb.core.*;
 import com.gitb.ps.ProcessingOperation;
 import com.gitb.tr.TAR;
@@ -17,9 +20,6 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.*;
 import java.util.function.Function;
 
@@ -118,6 +118,9 @@ public final class Utils {
 
     /**
      * Convert the provided content to a string value.
+     * <p>
+     * Handles of the local {@link ArtifactStore} (returned by earlier steps) are resolved from the store, while handles
+     * of a {@link DatasetStore} dataset are returned as-is (the dataset is queried in place).
      *
      * @param content The content to convert.
      * @return The string value.
@@ -125,19 +128,23 @@ public final class Utils {
     public static String asString(AnyContent content) {
         if (content == null || content.getValue() == null) {
             return null;
+        } else if (ArtifactStore.shared().isHandle(content.getValue())) {
+            // Value produced by an earlier step and kept locally.
+            return ArtifactStore.shared().readString(content.getValue());
+        } else if (DatasetStore.isHandle(content.getValue())) {
+            // Dataset kept locally, to be opened by the handlers.
+            return content.getValue();
         } else if (content.getEmbeddingMethod() == ValueEmbeddingEnumeration.BASE_64) {
             // Value provided as BASE64 string.
             return new String(Base64.getDecoder().decode(content.getValue()));
         } else if (content.getEmbeddingMethod() == ValueEmbeddingEnumeration.URI) {
             // Value provided as URI to look up.
             try {
-                var request = HttpRequest.newBuilder()
-                        .uri(new URI(content.getValue()))
+                var httpClient = HttpClientService.shared();
+                var request = httpClient.newRequest(new URI(content.getValue()))
                         .GET()
                         .build();
-                return HttpClient.newHttpClient()
-                        .send(request, HttpResponse.BodyHandlers.ofString())
-                        .body();
+                return httpClient.sendForString(request).body();
             } catch (URISyntaxException e) {
                 throw new IllegalArgumentException(String.format("The provided value [%s] was not a valid URI.", content.getValue()), e);
             } catch (IOException | InterruptedException e) {
@@ -169,19 +176,20 @@ public final class Utils {
      */
     public static byte[] getRequiredBinary(List<AnyContent> parameterItems, String inputName) {
         var input = getSingleRequiredInputForName(parameterItems, inputName);
-        if (input.getEmbeddingMethod() == null || input.getEmbeddingMethod() == ValueEmbeddingEnumeration.BASE_64) {
+        if (ArtifactStore.shared().isHandle(input.getValue())) {
+            // Value produced by an earlier step and kept locally.
+            return ArtifactStore.shared().readBytes(input.getValue());
+        } else if (input.getEmbeddingMethod() == null || input.getEmbeddingMethod() == ValueEmbeddingEnumeration.BASE_64) {
             // Base64 encoded string.
             return Base64.getDecoder().decode(input.getValue());
         } else if (input.getEmbeddingMethod() == ValueEmbeddingEnumeration.URI) {
             // Remote URI to read from.
             try {
-                var request = HttpRequest.newBuilder()
-                        .uri(new URI(input.getValue()))
+                var httpClient = HttpClientService.shared();
+                var request = httpClient.newRequest(new URI(input.getValue()))
                         .GET()
                         .build();
-                return HttpClient.newHttpClient()
-                        .send(request, HttpResponse.BodyHandlers.ofByteArray())
-                        .body();
+                return httpClient.sendForBytes(request).body();
             } catch (URISyntaxException e) {
                 throw new IllegalArgumentException(String.format("The provided value [%s] was not a valid URI.", input.getValue()), e);
             } catch (IOException | InterruptedException e) {
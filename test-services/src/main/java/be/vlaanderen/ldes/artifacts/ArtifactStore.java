@@ -0,0 +1,240 @@
+package be.vlaanderen.ldes.artifacts;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed store for large step outputs (such as crawled graphs).
+ * <p>
+ * Instead of returning multi-megabyte content inline, a service stores it here and returns a handle (the configured
+ * prefix followed by the SHA-256 of the content) as a URI. When the Test Bed passes the handle back as input of a later
+ * step, {@link be.vlaanderen.ldes.Utils#asString} resolves it from the local store, so the content is neither
+ * transferred again nor copied. Identical content is stored once and artifacts not used within the retention period
+ * are removed.
+ */
+@Component
+public class ArtifactStore {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactStore.class);
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    /** The instance shared with code that is not managed by Spring. */
+    private static volatile ArtifactStore shared;
+
+    private final Path directory;
+    private final String handlePrefix;
+    private final Duration retention;
+    private volatile Instant lastPurge = Instant.EPOCH;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to store artifacts in.
+     * @param handlePrefix The prefix of artifact handles.
+     * @param retentionHours The time artifacts are kept after their last use.
+     */
+    public ArtifactStore(@Value("${artifacts.directory:#{systemProperties['java.io.tmpdir']}/ldes-artifacts}") String directory,
+                         @Value("${artifacts.handlePrefix:urn:ldes:artifact:}") String handlePrefix,
+                         @Value("${artifacts.retentionHours:24}") long retentionHours) {
+        this.directory = Path.of(directory);
+        this.handlePrefix = handlePrefix;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    /**
+     * Create the store's directory, remove expired artifacts and register this instance as the shared one.
+     */
+    @PostConstruct
+    void initialise() {
+        purgeExpired();
+        shared = this;
+    }
+
+    /**
+     * Get the shared store for use outside Spring-managed components.
+     * <p>
+     * If the application context has not created the store (e.g. when used from a benchmark) a store with default
+     * settings is created.
+     *
+     * @return The store.
+     */
+    public static ArtifactStore shared() {
+        var instance = shared;
+        if (instance == null) {
+            synchronized (ArtifactStore.class) {
+                if (shared == null) {
+                    shared = new ArtifactStore(System.getProperty("java.io.tmpdir") + "/ldes-artifacts", "urn:ldes:artifact:", 24);
+                }
+                instance = shared;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Store content written to a stream (without buffering it in memory).
+     *
+     * @param writer The writer of the content.
+     * @return The artifact's handle.
+     */
+    public String write(ContentWriter writer) {
+        if (Duration.between(lastPurge, Instant.now()).toHours() >= 1) {
+            purgeExpired();
+        }
+        try {
+            Files.createDirectories(directory);
+            var tempFile = Files.createTempFile(directory, "artifact-", ".tmp");
+            var digest = MessageDigest.getInstance("SHA-256");
+            try {
+                try (var output = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)), digest)) {
+                    writer.write(output);
+                }
+                var hash = HexFormat.of().formatHex(digest.digest());
+                var file = directory.resolve(hash);
+                if (Files.exists(file)) {
+                    // Same content stored before.
+                    Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+                } else {
+                    Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return handlePrefix + hash;
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store artifact.", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Store a string (UTF-8 encoded).
+     *
+     * @param content The content.
+     * @return The artifact's handle.
+     */
+    public String put(String content) {
+        return write(output -> output.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Check whether a value is a handle of this store.
+     *
+     * @param value The value.
+     * @return True if it is a handle.
+     */
+    public boolean isHandle(String value) {
+        return value != null && value.startsWith(handlePrefix) && HASH.matcher(value.substring(handlePrefix.length())).matches();
+    }
+
+    /**
+     * Get the SHA-256 hash (hex encoded) of an artifact, identifying its content.
+     *
+     * @param handle The artifact's handle.
+     * @return The hash.
+     */
+    public String hashOf(String handle) {
+        if (!isHandle(handle)) {
+            throw new IllegalArgumentException(String.format("Invalid artifact handle [%s].", handle));
+        }
+        return handle.substring(handlePrefix.length());
+    }
+
+    /**
+     * Open an artifact.
+     *
+     * @param handle The artifact's handle.
+     * @return The stream to read the artifact from (to be closed by the caller).
+     */
+    public InputStream open(String handle) {
+        var file = directory.resolve(hashOf(handle));
+        try {
+            var input = Files.newInputStream(file);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return input;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Artifact [%s] is not (or no longer) available.", handle), e);
+        }
+    }
+
+    /**
+     * Read an artifact.
+     *
+     * @param handle The artifact's handle.
+     * @return The artifact's bytes.
+     */
+    public byte[] readBytes(String handle) {
+        try (var input = open(handle)) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to read artifact [%s].", handle), e);
+        }
+    }
+
+    /**
+     * Read an artifact as a (UTF-8 encoded) string.
+     *
+     * @param handle The artifact's handle.
+     * @return The artifact's content.
+     */
+    public String readString(String handle) {
+        return new String(readBytes(handle), StandardCharsets.UTF_8);
+    }
+
+    private void purgeExpired() {
+        lastPurge = Instant.now();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        var threshold = FileTime.from(Instant.now().minus(retention));
+        try (Stream<Path> files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                if (Files.getLastModifiedTime(file).compareTo(threshold) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to remove expired artifacts.", e);
+        }
+    }
+
+    /**
+     * Writer of an artifact's content.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        /**
+         * Write the content.
+         *
+         * @param output The stream to write to (closed by the store).
+         * @throws IOException If the content cannot be written.
+         */
+        void write(OutputStream output) throws IOException;
+    }
+
+}
@@ -1,7 +1,9 @@
 package be.vlaanderen.ldes.gitb;
 
+import be.vlaanderen.ldes.handlers.CrawlResultCache;
 import be.vlaanderen.ldes.handlers.DatasetRequestHandler;
 import be.vlaanderen.ldes.handlers.PostDatasetHandler;
+import be.vlaanderen.ldes.http.HttpCache;
 import com.apicatalog.jsonld.StringUtils;
 import com.gitb.core.AnyContent;
 import com.gitb.core.ValueEmbeddingEnumeration;
@@ -34,6 +36,10 @@ public class MessagingServiceImpl implements MessagingService {
     private PostDatasetHandler postDatasetHandler;
     @Autowired
     private DatasetRequestHandler datasetRequestHandler;
+    @Autowired
+    private CrawlResultCache crawlResultCache;
+    @Autowired
+    private HttpCache httpCache;
 
     /**
      * This method normally returns documentation on how the service is expected to be used. It is meaningful
@@ -94,6 +100,9 @@ public class MessagingServiceImpl implements MessagingService {
                 var contentType = getRequiredString(sendRequest.getInput(), "contentType");
                 // Trigger the related action.
                 var results = postDatasetHandler.postDatasets(datasetZipArchive, contentType, endpoint);
+                // Previously crawled views (and cached pages) of the server are now outdated.
+                crawlResultCache.invalidate(endpoint);
+                httpCache.invalidate(endpoint);
                 // Produce the resulting report.
                 var resultsItem = new AnyContent();
                 resultsItem.setName("datasets");
@@ -125,6 +134,8 @@ public class MessagingServiceImpl implements MessagingService {
                 var contentType = getRequiredString(sendRequest.getInput(), "contentType");
                 // Trigger the related action.
                 var result = postDatasetHandler.post(content.getBytes(StandardCharsets.UTF_8), contentType, endpoint);
+                crawlResultCache.invalidate(endpoint);
+                httpCache.invalidate(endpoint);
                 // Produce the resulting report.
                 if (result.status() == 400) {
                     /*
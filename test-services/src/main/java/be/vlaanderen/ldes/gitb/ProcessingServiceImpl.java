@@ -1,9 +1,19 @@
 package be.vlaanderen.ldes.gitb;
 
 import be.vlaanderen.ldes.Utils;
+import be.vlaanderen.ldes.artifacts.ArtifactStore;
+import be.vlaanderen.ldes.handlers.ConcurrencyController;
+import be.vlaanderen.ldes.handlers.CrawlException;
 import be.vlaanderen.ldes.handlers.CrawlHandler;
+import be.vlaanderen.ldes.handlers.CrawlLayout;
+import be.vlaanderen.ldes.handlers.CrawlResultCache;
 import be.vlaanderen.ldes.handlers.Crawler;
+import be.vlaanderen.ldes.handlers.CrawlerFactory;
+import be.vlaanderen.ldes.handlers.QueryLimitException;
 import be.vlaanderen.ldes.handlers.SparqlQueryHandler;
+import be.vlaanderen.ldes.http.HttpClientService;
+import be.vlaanderen.ldes.storage.DatasetStore;
+import com.gitb.core.AnyContent;
 import com.gitb.core.ValueEmbeddingEnumeration;
 import com.gitb.ps.Void;
 import com.gitb.ps.*;
@@ -17,9 +27,12 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.system.Txn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedWriter;
@@ -27,13 +40,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static be.vlaanderen.ldes.Utils.createAnyContentSimple;
+import static be.vlaanderen.ldes.Utils.getOptionalString;
 import static be.vlaanderen.ldes.Utils.getRequiredString;
 
 /**
@@ -49,6 +68,20 @@ public class ProcessingServiceImpl implements ProcessingService {
     private CrawlHandler crawlHandler;
     @Autowired
     private SparqlQueryHandler sparqlQueryHandler;
+    @Autowired
+    private HttpClientService httpClient;
+    @Autowired
+    private CrawlerFactory crawlerFactory;
+    @Autowired
+    private CrawlResultCache crawlResultCache;
+    @Autowired
+    private ArtifactStore artifactStore;
+    @Autowired
+    private DatasetStore datasetStore;
+    @Value("${crawler.storage:memory}")
+    private String defaultStorage;
+    @Value("${crawler.layout:nested}")
+    private String defaultLayout;
     @Resource
     private WebServiceContext wsContext;
 
@@ -88,13 +121,78 @@ public class ProcessingServiceImpl implements ProcessingService {
                  */
                 // Get the expected inputs.
                 var ViewURI = getRequiredString(processRequest.getInput(), "viewURI");
+                // The optional concurrency selects the concurrent crawl mode.
+                var concurrency = getOptionalString(processRequest.getInput(), "concurrency").map(Integer::parseInt);
+                // The optional crawl id resumes a crawl that failed before.
+                var requestedCrawlId = getOptionalString(processRequest.getInput(), "crawlId");
+                var crawlId = requestedCrawlId.orElseGet(() -> UUID.randomUUID().toString());
+                // Crawls are only checkpointed (so that they can be resumed if they fail) if a crawl id or the optional
+                // "checkpoint" input ("true") is given.
+                var checkpoint = requestedCrawlId.isPresent() || getOptionalString(processRequest.getInput(), "checkpoint").map(Boolean::parseBoolean).orElse(false);
+                // The optional storage keeps the crawled graph in memory ("memory") or in a disk-backed dataset ("tdb2").
+                var storage = getOptionalString(processRequest.getInput(), "storage").orElse(defaultStorage);
+                if (!"memory".equals(storage) && !"tdb2".equals(storage)) {
+                    throw new IllegalArgumentException(String.format("Unexpected storage [%s].", storage));
+                }
+                // The optional layout nests the pages in a single graph ("nested") or keeps each page in a named graph ("graphs").
+                var layout = CrawlLayout.fromName(getOptionalString(processRequest.getInput(), "layout").orElse(defaultLayout));
+                // The optional format of a result in the named-graph layout ("trig" or "nquads").
+                var format = getOptionalString(processRequest.getInput(), "format").orElse("trig");
+                if (!"trig".equals(format) && !"nquads".equals(format)) {
+                    throw new IllegalArgumentException(String.format("Unexpected format [%s].", format));
+                }
+                // The optional output returns the crawled graph inline ("inline") or as a handle ("handle") that only the
+                // steps of these test services resolve (not the Test Bed or other validators).
+                var handleOutput = isHandleOutput(processRequest);
+                var variant = String.join("/", storage, layout.name().toLowerCase(), layout == CrawlLayout.GRAPHS ? format : "turtle", handleOutput ? "handle" : "inline");
+                var rateControl = new AtomicReference<ConcurrencyController>();
 
-                Crawler crawler = new Crawler(ViewURI);
-                LOG.info("Now crawling the View [{}]", ViewURI);
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                RDFDataMgr.write(outputStream, crawler.run().getGraph(), Lang.TURTLE);
-                // Produce the resulting report.
-                response.getOutput().add(createAnyContentSimple("result", outputStream.toString(), ValueEmbeddingEnumeration.STRING));
+                try {
+                    // Results are shared between sessions (and concurrent requests for the same view crawl only once).
+                    var result = crawlResultCache.get(ViewURI, variant, crawlId, () -> {
+                        Crawler crawler = crawlerFactory.create(ViewURI, crawlId, checkpoint).withLayout(layout);
+                        if ("tdb2".equals(storage)) {
+                            crawler.withDataset(datasetStore.create(crawlId));
+                        }
+                        LOG.info("Now crawling the View [{}] (crawl [{}])", ViewURI, crawlId);
+                        try {
+                            if (concurrency.isPresent()) {
+                                crawler.run(concurrency.get());
+                            } else {
+                                crawler.run();
+                            }
+                        } finally {
+                            rateControl.set(crawler.getRateControl());
+                        }
+                        httpClient.logStatistics(ViewURI);
+                        if (!handleOutput) {
+                            var output = new ByteArrayOutputStream();
+                            writeCrawlResult(crawler, layout, format, output);
+                            return output.toString(StandardCharsets.UTF_8);
+                        }
+                        if ("tdb2".equals(storage)) {
+                            // Later steps query the dataset in place.
+                            return DatasetStore.handleOf(crawlId);
+                        }
+                        // Keep the (large) result locally and return a handle to it.
+                        return artifactStore.write(output -> writeCrawlResult(crawler, layout, format, output));
+                    });
+                    // Produce the resulting report.
+                    response.getOutput().add(createAnyContentSimple("result", result.result(), handleOutput ? ValueEmbeddingEnumeration.URI : ValueEmbeddingEnumeration.STRING));
+                    // The id of the crawl that produced the result (which may have been crawled for another request).
+                    response.getReport().getContext().getItem().add(createAnyContentSimple("crawlId", result.crawlId(), ValueEmbeddingEnumeration.STRING));
+                } catch (CrawlException e) {
+                    LOG.warn("Crawl [{}] of [{}] failed.", e.getCrawlId(), ViewURI, e);
+                    // Report the failure with the id to resume the crawl from (if it was checkpointed).
+                    response.getReport().setResult(TestResultType.FAILURE);
+                    if (e.getCrawlId() != null) {
+                        response.getReport().getContext().getItem().add(createAnyContentSimple("crawlId", e.getCrawlId(), ValueEmbeddingEnumeration.STRING));
+                    }
+                    response.getReport().getContext().getItem().add(createAnyContentSimple("error", String.valueOf(e.getCause()), ValueEmbeddingEnumeration.STRING));
+                }
+                if (rateControl.get() != null) {
+                    response.getReport().getContext().getItem().add(createRateControlItem(rateControl.get()));
+                }
             }
             case "sparqlSelect" -> {
                 /*
@@ -104,6 +202,10 @@ public class ProcessingServiceImpl implements ProcessingService {
                 var content = getRequiredString(processRequest.getInput(), "content");
                 var contentType = getRequiredString(processRequest.getInput(), "contentType");
                 var query = getRequiredString(processRequest.getInput(), "query");
+                // The optional format of the results: "xml", "json", "csv" or "tsv".
+                var format = getOptionalString(processRequest.getInput(), "format").orElse("xml");
+                var resultLang = SparqlQueryHandler.resultLang(format);
+                var limits = getQueryLimits(processRequest);
 
                 String filePath = "crawled.ttl";
                     try {
@@ -123,10 +225,78 @@ public class ProcessingServiceImpl implements ProcessingService {
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
+                // The optional output returns the results inline or as a handle (see the "crawl" operation).
+                var handleOutput = isHandleOutput(processRequest);
+                // Trigger the processing.
+                try {
+                    if (handleOutput) {
+                        // Stream the results to a local artifact as they are produced.
+                        var result = artifactStore.write(output -> sparqlQueryHandler.select(content, contentType, query, limits, resultLang, output));
+                        response.getOutput().add(createAnyContentSimple("result", result, ValueEmbeddingEnumeration.URI));
+                    } else {
+                        var result = sparqlQueryHandler.select(content, contentType, query, limits, resultLang);
+                        // Produce the resulting report.
+                        response.getOutput().add(createAnyContentSimple("result", result, ValueEmbeddingEnumeration.STRING));
+                    }
+                } catch (QueryLimitException e) {
+                    reportQueryLimit(response, processRequest, e);
+                }
+            }
+            case "sparqlBatch" -> {
+                /*
+                 * The "sparqlBatch" operation is used to execute several named SPARQL select queries against the same
+                 * provided RDF graph, which is parsed only once.
+                 */
+                // Get the expected inputs.
+                var content = getRequiredString(processRequest.getInput(), "content");
+                var contentType = getRequiredString(processRequest.getInput(), "contentType");
+                // The queries are provided as a map of query names to queries, and run in the order of their names.
+                var queries = new TreeMap<String, String>();
+                for (var item : Utils.getSingleRequiredInputForName(processRequest.getInput(), "queries").getItem()) {
+                    if (queries.put(item.getName(), Utils.asString(item)) != null) {
+                        throw new IllegalArgumentException(String.format("Duplicate query name [%s].", item.getName()));
+                    }
+                }
+                if (queries.isEmpty()) {
+                    throw new IllegalArgumentException("No queries were provided.");
+                }
+                // The optional format of the results, as for the "sparqlSelect" operation.
+                var format = getOptionalString(processRequest.getInput(), "format").orElse("xml");
+                // The optional limits, applying to each query.
+                var limits = getQueryLimits(processRequest);
+                // The optional output, as for the "sparqlSelect" operation.
+                var handleOutput = isHandleOutput(processRequest);
+                // Trigger the processing.
+                try {
+                    var results = sparqlQueryHandler.selectAll(content, contentType, List.copyOf(queries.values()), limits, SparqlQueryHandler.resultLang(format), handleOutput);
+                    // Produce an output per query, named after it.
+                    var embedding = handleOutput ? ValueEmbeddingEnumeration.URI : ValueEmbeddingEnumeration.STRING;
+                    var names = List.copyOf(queries.keySet());
+                    for (int i = 0; i < names.size(); i++) {
+                        response.getOutput().add(createAnyContentSimple(names.get(i), results.get(i), embedding));
+                    }
+                } catch (QueryLimitException e) {
+                    reportQueryLimit(response, processRequest, e);
+                }
+            }
+            case "sparqlCount" -> {
+                /*
+                 * The "sparqlCount" operation is used to count the solutions of a SPARQL select query against a provided
+                 * RDF graph (without producing the results themselves).
+                 */
+                // Get the expected inputs.
+                var content = getRequiredString(processRequest.getInput(), "content");
+                var contentType = getRequiredString(processRequest.getInput(), "contentType");
+                var query = getRequiredString(processRequest.getInput(), "query");
+                var limits = getQueryLimits(processRequest);
                 // Trigger the processing.
-                var result = sparqlQueryHandler.select(content, contentType, query);
-                // Produce the resulting report.
-                response.getOutput().add(createAnyContentSimple("result", result, ValueEmbeddingEnumeration.STRING));
+                try {
+                    var count = sparqlQueryHandler.count(content, contentType, query, limits);
+                    // Produce the resulting report.
+                    response.getOutput().add(createAnyContentSimple("result", String.valueOf(count), ValueEmbeddingEnumeration.STRING));
+                } catch (QueryLimitException e) {
+                    reportQueryLimit(response, processRequest, e);
+                }
             }
             default -> throw new IllegalArgumentException(String.format("Unexpected operation [%s].", processRequest.getOperation()));
         }
@@ -134,6 +304,97 @@ public class ProcessingServiceImpl implements ProcessingService {
         return response;
     }
 
+    /**
+     * Check whether an operation returns its (large) results as handles rather than inline, from its optional "output"
+     * input ("inline" by default, or "handle").
+     * <p>
+     * Handles (see {@link ArtifactStore} and {@link DatasetStore}) are only resolved by the steps of these test services,
+     * so results to pass to the Test Bed or to other services (such as the SHACL validator) must be returned inline.
+     *
+     * @param processRequest The request.
+     * @return True for handle output.
+     */
+    private boolean isHandleOutput(ProcessRequest processRequest) {
+        var output = getOptionalString(processRequest.getInput(), "output").orElse("inline");
+        return switch (output) {
+            case "inline" -> false;
+            case "handle" -> true;
+            default -> throw new IllegalArgumentException(String.format("Unexpected output [%s].", output));
+        };
+    }
+
+    /**
+     * Write the crawled graph: Turtle for the nested layout, TriG or N-Quads (depending on the format) for the
+     * named-graph layout.
+     *
+     * @param crawler The crawler.
+     * @param layout The crawl's layout.
+     * @param format The format for the named-graph layout ("trig" or "nquads").
+     * @param output The stream to write to.
+     */
+    private static void writeCrawlResult(Crawler crawler, CrawlLayout layout, String format, OutputStream output) {
+        var dataset = crawler.getDataset();
+        if (dataset == null) {
+            RDFDataMgr.write(output, crawler.getGraph(), Lang.TURTLE);
+        } else if (layout == CrawlLayout.GRAPHS) {
+            var rdfFormat = "nquads".equals(format) ? RDFFormat.NQUADS : RDFFormat.TRIG_BLOCKS;
+            Txn.executeRead(dataset, () -> RDFDataMgr.write(output, dataset, rdfFormat));
+        } else {
+            Txn.executeRead(dataset, () -> RDFDataMgr.write(output, dataset.getDefaultModel(), Lang.TURTLE));
+        }
+    }
+
+    /**
+     * Get the limits of the queries of a SPARQL operation from its optional "timeout" (in seconds) and "maxRows"
+     * inputs, which can only lower the configured limits (see {@link SparqlQueryHandler#limits}).
+     *
+     * @param processRequest The request.
+     * @return The limits.
+     */
+    private SparqlQueryHandler.QueryLimits getQueryLimits(ProcessRequest processRequest) {
+        var timeout = getOptionalString(processRequest.getInput(), "timeout").map(Long::parseLong);
+        var maxRows = getOptionalString(processRequest.getInput(), "maxRows").map(Long::parseLong);
+        return sparqlQueryHandler.limits(timeout, maxRows);
+    }
+
+    /**
+     * Report a query that exceeded its limits as a failure (without outputs).
+     *
+     * @param response The response.
+     * @param processRequest The request.
+     * @param e The exceeded limit.
+     */
+    private void reportQueryLimit(ProcessResponse response, ProcessRequest processRequest, QueryLimitException e) {
+        LOG.warn("Operation [{}] for test session [{}] exceeded its limits: {}", processRequest.getOperation(), processRequest.getSessionId(), e.getMessage());
+        response.getOutput().clear();
+        response.getReport().setResult(TestResultType.FAILURE);
+        response.getReport().getContext().getItem().add(createAnyContentSimple("error", e.getMessage(), ValueEmbeddingEnumeration.STRING));
+    }
+
+    /**
+     * Create the report item with the statistics and decisions of a crawl's rate control.
+     *
+     * @param rateControl The crawl's rate controller.
+     * @return The report item.
+     */
+    private AnyContent createRateControlItem(ConcurrencyController rateControl) {
+        var statistics = rateControl.getStatistics();
+        var item = new AnyContent();
+        item.setName("rateControl");
+        item.setType("map");
+        item.getItem().add(createAnyContentSimple("concurrency", String.valueOf(statistics.limit()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("maxConcurrency", String.valueOf(statistics.maxLimit()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("increases", String.valueOf(statistics.increases()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("decreases", String.valueOf(statistics.decreases()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("throttledResponses", String.valueOf(statistics.throttledResponses()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("p95LatencyMillis", String.valueOf(statistics.p95LatencyMillis()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("pausedMillis", String.valueOf(statistics.pausedMillis()), ValueEmbeddingEnumeration.STRING));
+        item.getItem().add(createAnyContentSimple("decisions", rateControl.getDecisions().stream().map(ConcurrencyController.Decision::toString).collect(Collectors.joining("\n")), ValueEmbeddingEnumeration.STRING));
+        // Only for display purposes.
+        item.setForContext(false);
+        return item;
+    }
+
     /**
      * Called if we use transactional processing operations for stateful operations (you can ignore this).
      *
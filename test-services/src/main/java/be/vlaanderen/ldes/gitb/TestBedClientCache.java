@@ -0,0 +1,90 @@
+package be.vlaanderen.ldes.gitb;
+
+import org.apache.cxf.frontend.ClientProxy;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the JAX-WS clients used to call back the Test Bed, shared by all test sessions and services.
+ * <p>
+ * Creating a client proxy processes the service's WSDL and sets up its CXF conduit, so clients are created once per
+ * callback address (the ReplyTo header of the Test Bed's calls, see
+ * {@link be.vlaanderen.ldes.Utils#getReplyToAddressFromHeaders}) and service interface, and reused by concurrent
+ * calls. Clients that were not used for the configured idle time are closed (checked when a client is requested).
+ */
+@Component
+public class TestBedClientCache {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(TestBedClientCache.class);
+
+    @Value("${testbed.clientCache.idleSeconds:600}")
+    private long idleSeconds;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Get the client of a Test Bed callback service, creating it if it is not cached.
+     *
+     * @param callbackAddress The callback address.
+     * @param serviceClass The service interface (e.g. {@link com.gitb.vs.ValidationClient}).
+     * @return The client.
+     * @param <T> The type of client.
+     */
+    public <T> T get(String callbackAddress, Class<T> serviceClass) {
+        var now = System.nanoTime();
+        evictIdle(now);
+        var entry = entries.computeIfAbsent(new Key(callbackAddress, serviceClass), key -> {
+            LOG.debug("Creating [{}] client for [{}].", serviceClass.getSimpleName(), callbackAddress);
+            var proxyFactoryBean = new JaxWsProxyFactoryBean();
+            proxyFactoryBean.setServiceClass(serviceClass);
+            proxyFactoryBean.setAddress(callbackAddress);
+            return new Entry(proxyFactoryBean.create());
+        });
+        entry.lastUsed = now;
+        return serviceClass.cast(entry.client);
+    }
+
+    private void evictIdle(long now) {
+        var idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        entries.forEach((key, entry) -> {
+            if (now - entry.lastUsed > idleNanos && entries.remove(key, entry)) {
+                LOG.debug("Closing idle [{}] client for [{}].", key.serviceClass().getSimpleName(), key.callbackAddress());
+                try {
+                    ClientProxy.getClient(entry.client).destroy();
+                } catch (RuntimeException e) {
+                    LOG.warn(String.format("Unable to close client for [%s].", key.callbackAddress()), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * The key of a cached client.
+     *
+     * @param callbackAddress The callback address.
+     * @param serviceClass The service interface.
+     */
+    private record Key(String callbackAddress, Class<?> serviceClass) {}
+
+    /**
+     * A cached client.
+     */
+    private static final class Entry {
+
+        private final Object client;
+        private volatile long lastUsed = System.nanoTime();
+
+        Entry(Object client) {
+            this.client = client;
+        }
+    }
+
+}
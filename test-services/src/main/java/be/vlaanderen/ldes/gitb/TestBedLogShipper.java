@@ -0,0 +1,241 @@
+package be.vlaanderen.ldes.gitb;
+
+import com.gitb.core.LogLevel;
+import com.gitb.vs.LogRequest;
+import com.gitb.vs.ValidationClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ships test session log messages to the Test Bed asynchronously, so that validations do not wait for a call to the
+ * Test Bed per message.
+ * <p>
+ * Messages at or above the configured level are put in a bounded queue that a single worker drains in batches.
+ * Consecutive messages of a batch for the same test session and level are shipped as a single log entry (one message
+ * per line), and the messages of a test session are shipped in the order they were logged. When the queue is full,
+ * messages are dropped and counted per test session, a single warning with the number of dropped messages being
+ * shipped when the session's messages are flushed. Validations flush their session's messages before returning their
+ * report (see {@link #flush(String)}).
+ */
+@Component
+public class TestBedLogShipper {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(TestBedLogShipper.class);
+
+    @Value("${validation.log.level:INFO}")
+    private LogLevel level;
+    @Value("${validation.log.queueSize:10000}")
+    private int queueSize;
+    @Value("${validation.log.batchSize:50}")
+    private int batchSize;
+    @Value("${validation.log.flushTimeoutSeconds:30}")
+    private long flushTimeoutSeconds;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private BlockingQueue<Entry> queue;
+    private Thread worker;
+
+    /**
+     * Start the worker.
+     */
+    @PostConstruct
+    void initialise() {
+        queue = new ArrayBlockingQueue<>(queueSize);
+        worker = new Thread(this::ship, "test-bed-log-shipper");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop the worker (messages that are still queued are not shipped).
+     */
+    @PreDestroy
+    void shutdown() {
+        worker.interrupt();
+    }
+
+    /**
+     * Check whether messages of a given level are shipped.
+     *
+     * @param messageLevel The level.
+     * @return True if the level is at or above the configured one.
+     */
+    public boolean isEnabled(LogLevel messageLevel) {
+        return rank(messageLevel) >= rank(level);
+    }
+
+    /**
+     * Queue a message to be shipped (or count it as dropped if the queue is full).
+     *
+     * @param sessionId The test session ID.
+     * @param client The supplier of the client to post the message with.
+     * @param messageLevel The message's level.
+     * @param message The message.
+     */
+    public void submit(String sessionId, Supplier<ValidationClient> client, LogLevel messageLevel, String message) {
+        var session = sessions.computeIfAbsent(sessionId, Session::new);
+        synchronized (session) {
+            session.client = client;
+            session.pending++;
+        }
+        if (!queue.offer(new Entry(session, messageLevel, message))) {
+            synchronized (session) {
+                session.dropped++;
+                session.done(1);
+            }
+        }
+    }
+
+    /**
+     * Wait until the queued messages of a test session are shipped (up to the configured timeout) and ship the number
+     * of dropped messages (if any).
+     *
+     * @param sessionId The test session ID.
+     */
+    public void flush(String sessionId) {
+        var session = sessionId == null ? null : sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        int dropped;
+        Supplier<ValidationClient> client;
+        synchronized (session) {
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(flushTimeoutSeconds);
+            try {
+                while (session.pending > 0 && deadline - System.nanoTime() > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(session, deadline - System.nanoTime());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (session.pending > 0) {
+                LOG.warn("Timed out flushing [{}] log message(s) of test session [{}].", session.pending, sessionId);
+            }
+            dropped = session.dropped;
+            session.dropped = 0;
+            client = session.client;
+            if (session.pending == 0) {
+                sessions.remove(sessionId, session);
+            }
+        }
+        if (dropped > 0) {
+            post(sessionId, client, LogLevel.WARNING, String.format("[%s] log message(s) were dropped as the log queue was full.", dropped));
+        }
+    }
+
+    /**
+     * Ship the queued messages until interrupted.
+     */
+    private void ship() {
+        var batch = new ArrayList<Entry>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            ship(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Ship a batch, merging consecutive messages of the same test session and level.
+     *
+     * @param batch The batch.
+     */
+    private void ship(List<Entry> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            var first = batch.get(start);
+            var message = new StringBuilder(first.message());
+            int end = start + 1;
+            while (end < batch.size() && batch.get(end).session() == first.session() && batch.get(end).level() == first.level()) {
+                message.append('\n').append(batch.get(end).message());
+                end++;
+            }
+            Supplier<ValidationClient> client;
+            synchronized (first.session()) {
+                client = first.session().client;
+            }
+            post(first.session().id, client, first.level(), message.toString());
+            synchronized (first.session()) {
+                first.session().done(end - start);
+            }
+            start = end;
+        }
+    }
+
+    private void post(String sessionId, Supplier<ValidationClient> client, LogLevel messageLevel, String message) {
+        try {
+            var logRequest = new LogRequest();
+            logRequest.setSessionId(sessionId);
+            logRequest.setMessage(message);
+            logRequest.setLevel(messageLevel);
+            client.get().log(logRequest);
+        } catch (RuntimeException e) {
+            LOG.warn(String.format("Unable to ship log message(s) of test session [%s].", sessionId), e);
+        }
+    }
+
+    private static int rank(LogLevel logLevel) {
+        return switch (logLevel) {
+            case INFO -> 1;
+            case WARNING -> 2;
+            case ERROR -> 3;
+            default -> 0;
+        };
+    }
+
+    /**
+     * The messages of a test session that are queued or were dropped.
+     */
+    private static final class Session {
+
+        private final String id;
+        private Supplier<ValidationClient> client;
+        private int pending;
+        private int dropped;
+
+        Session(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Record that messages were shipped (or dropped), waking up flushes once none are pending.
+         *
+         * @param count The number of messages.
+         */
+        void done(int count) {
+            pending -= count;
+            if (pending == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A queued message.
+     *
+     * @param session The message's test session.
+     * @param level The message's level.
+     * @param message The message.
+     */
+    private record Entry(Session session, LogLevel level, String message) {}
+
+}
@@ -15,4 +15,14 @@ public interface TestBedLogger {
      */
     void log(String message, LogLevel level);
 
+    /**
+     * Check whether messages of a given level are logged, to skip building messages that would be discarded.
+     *
+     * @param level The severity level.
+     * @return True if messages of this level are logged.
+     */
+    default boolean isEnabled(LogLevel level) {
+        return true;
+    }
+
 }
@@ -17,10 +17,10 @@ import com.gitb.vs.Void;
 import jakarta.annotation.Resource;
 import jakarta.xml.ws.WebServiceContext;
 import java.math.BigInteger;
-import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.ArrayList;
@@ -57,6 +57,12 @@ public class ValidationServiceImpl implements ValidationService {
   private RelationGeospatialValidationHandler relationGeospatialValidationHandler;
   @Autowired
   private RelationStringValidationHandler relationStringValidationHandler;
+  @Autowired
+  private TestBedLogShipper logShipper;
+  @Autowired
+  private TestBedClientCache clientCache;
+  @Value("${validation.parallel:false}")
+  private boolean defaultParallel;
 
   @Resource
   private WebServiceContext wsContext;
@@ -85,6 +91,21 @@ public class ValidationServiceImpl implements ValidationService {
    */
   @Override
   public ValidationResponse validate(ValidateRequest validateRequest) {
+    try {
+      return doValidate(validateRequest);
+    } finally {
+      // Make sure the session's log messages are shipped before the step completes, also when the validation fails.
+      logShipper.flush(validateRequest.getSessionId());
+    }
+  }
+
+  /**
+   * Carry out the validation (see {@link #validate(ValidateRequest)}).
+   *
+   * @param validateRequest The request's inputs.
+   * @return The validation outcome.
+   */
+  private ValidationResponse doValidate(ValidateRequest validateRequest) {
     /*
      * This service is only used to validate time-based relations. If you want to add additional types of custom validations
      * you can add additional services, or as a simpler alternative, just use the same implementation by passing a
@@ -116,13 +137,16 @@ public class ValidationServiceImpl implements ValidationService {
         // To illustrate the logging capabilities we will use this class to add log statements to the test session's log.
         var logger = new ValidationServiceLogger(
           validateRequest.getSessionId(),
-          getReplyToAddressFromHeaders(wsContext).orElse(null)
+          getReplyToAddressFromHeaders(wsContext).orElse(null),
+          logShipper,
+          clientCache
         );
         // Carry out the validation.
         errorMessages = relationTimestampValidationHandler.validate(
           content,
           contentType,
-          logger
+          logger,
+          isParallel(validateRequest)
         );       
       }
 
@@ -158,13 +182,16 @@ public class ValidationServiceImpl implements ValidationService {
         // To illustrate the logging capabilities we will use this class to add log statements to the test session's log.
         var logger = new ValidationServiceLogger(
           validateRequest.getSessionId(),
-          getReplyToAddressFromHeaders(wsContext).orElse(null)
+          getReplyToAddressFromHeaders(wsContext).orElse(null),
+          logShipper,
+          clientCache
         );
         // Carry out the validation.
         errorMessages = relationGeospatialValidationHandler.validate(
           content,
           contentType,
-          logger
+          logger,
+          isParallel(validateRequest)
         );       
       }
 
@@ -182,13 +209,16 @@ public class ValidationServiceImpl implements ValidationService {
         // To illustrate the logging capabilities we will use this class to add log statements to the test session's log.
         var logger = new ValidationServiceLogger(
           validateRequest.getSessionId(),
-          getReplyToAddressFromHeaders(wsContext).orElse(null)
+          getReplyToAddressFromHeaders(wsContext).orElse(null),
+          logShipper,
+          clientCache
         );
         // Carry out the validation.
         errorMessages = relationStringValidationHandler.validate(
           content,
           contentType,
-          logger
+          logger,
+          isParallel(validateRequest)
         );       
       }
 
@@ -210,7 +240,9 @@ public class ValidationServiceImpl implements ValidationService {
         // To illustrate the logging capabilities we will use this class to add log statements to the test session's log.
         var logger = new ValidationServiceLogger(
           validateRequest.getSessionId(),
-          getReplyToAddressFromHeaders(wsContext).orElse(null)
+          getReplyToAddressFromHeaders(wsContext).orElse(null),
+          logShipper,
+          clientCache
         );
         // Carry out the validation.
         errorMessages =  rdfComparisonHandler.compareXMLUris(
@@ -233,7 +265,9 @@ public class ValidationServiceImpl implements ValidationService {
         System.out.println(errorMessages);   
         var logger = new ValidationServiceLogger(
           validateRequest.getSessionId(),
-          getReplyToAddressFromHeaders(wsContext).orElse(null)
+          getReplyToAddressFromHeaders(wsContext).orElse(null),
+          logShipper,
+          clientCache
         );
         // Carry out the validation.
         errorMessages = wktSubstringRegexHandler.validateRegList(
@@ -272,55 +306,71 @@ public class ValidationServiceImpl implements ValidationService {
   }
 
   /**
-   * Convenience class to facilitate test session logging.
+   * Determine whether the members of relations are to be checked in parallel (optional "parallel" input).
+   *
+   * @param validateRequest The request's inputs.
+   * @return True for parallel validation.
+   */
+  private boolean isParallel(ValidateRequest validateRequest) {
+    return Utils.getOptionalString(validateRequest.getInput(), "parallel")
+      .map(Boolean::parseBoolean)
+      .orElse(defaultParallel);
+  }
+
+  /**
+   * Convenience class to facilitate test session logging (messages are shipped asynchronously by the {@link TestBedLogShipper}).
    */
   static class ValidationServiceLogger implements TestBedLogger {
 
     private final String sessionId;
     private final String callbackAddress;
-    private ValidationClient client;
+    private final TestBedLogShipper logShipper;
+    private final TestBedClientCache clientCache;
 
     /**
      * Constructor that received the basic information needed to make log entries on the test session log (the session ID and the callback address).
      *
      * @param sessionId The test session ID
      * @param callbackAddress The Test Bed's callback address to post log messages to.
+     * @param logShipper The shipper of log messages.
+     * @param clientCache The cache of Test Bed clients.
      */
-    private ValidationServiceLogger(String sessionId, String callbackAddress) {
+    private ValidationServiceLogger(String sessionId, String callbackAddress, TestBedLogShipper logShipper, TestBedClientCache clientCache) {
       this.sessionId = sessionId;
       this.callbackAddress = callbackAddress;
+      this.logShipper = logShipper;
+      this.clientCache = clientCache;
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * May be called concurrently by the workers of a parallel validation.
      */
     public void log(String message, LogLevel level) {
-      if (sessionId != null && callbackAddress != null) {
-        var logRequest = new LogRequest();
-        logRequest.setSessionId(sessionId);
-        logRequest.setMessage(message);
-        logRequest.setLevel(level);
-        getClient().log(logRequest);
+      if (isEnabled(level)) {
+        logShipper.submit(sessionId, this::getClient, level, message);
       }
     }
 
     /**
-     * Create (and cache) a service client to post log messages to the Test Bed.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled(LogLevel level) {
+      return sessionId != null && callbackAddress != null && logShipper.isEnabled(level);
+    }
+
+    /**
+     * Get the service client to post log messages to the Test Bed.
      * <p>
-     * Realistically speaking we could just create a single global client and reuse it across
-     * all calls. However, for the theoretical case that the same service is used by different Test Bed
-     * instances at the same time we can create it per request.
+     * Clients are cached per callback address, so that different Test Bed instances using the same service at the
+     * same time each get their own client while requests of the same Test Bed reuse it.
      *
      * @return The client.
      */
     private ValidationClient getClient() {
-      if (client == null) {
-        var proxyFactoryBean = new JaxWsProxyFactoryBean();
-        proxyFactoryBean.setServiceClass(ValidationClient.class);
-        proxyFactoryBean.setAddress(callbackAddress);
-        client = (ValidationClient) proxyFactoryBean.create();
-      }
-      return client;
+      return clientCache.get(callbackAddress, ValidationClient.class);
     }
   }
 }
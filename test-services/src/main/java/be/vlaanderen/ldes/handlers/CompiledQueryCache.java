@@ -0,0 +1,233 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.apache.jena.atlas.lib.Alarm;
+import org.apache.jena.atlas.lib.AlarmClock;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DynamicDatasets;
+import org.apache.jena.sparql.core.Substitute;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.QueryEngineRegistry;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingRoot;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.util.Context;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Cache of SPARQL select queries compiled to optimised ARQ algebra, shared by all requests.
+ * <p>
+ * Executing a query from its text parses it, compiles it to algebra and optimises it on every call. Compiled queries
+ * are cached per query text (least recently used ones being evicted beyond the configured number) and executed from
+ * their algebra. Queries that only differ in some values are written once with variables for these values, which are
+ * then bound per call by substituting them in the algebra ({@link CompiledQuery#execute(DatasetGraph, QuerySolutionMap)})
+ * rather than by formatting them into a new query text.
+ * <p>
+ * Executions can be limited in time and number of rows ({@link CompiledQuery#execute(DatasetGraph, QuerySolutionMap, long, long)}).
+ * On timeout, ARQ's alarm clock cancels the query's iterators, which stop at their next step, as for ARQ's own query
+ * timeouts.
+ */
+@Component
+public class CompiledQueryCache {
+
+    private final int maxEntries;
+    /** The compiled queries in least recently used order (guarded by this). */
+    private final LinkedHashMap<String, CompiledQuery> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries The maximum number of compiled queries to keep.
+     */
+    public CompiledQueryCache(@Value("${sparql.queryCache.maxEntries:256}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get a compiled select query, compiling it if it is not cached.
+     *
+     * @param queryText The query.
+     * @return The compiled query.
+     * @throws IllegalArgumentException If the query is not a select query.
+     */
+    public CompiledQuery get(String queryText) {
+        synchronized (this) {
+            var cached = entries.get(queryText);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        var compiled = compile(queryText);
+        synchronized (this) {
+            entries.putIfAbsent(queryText, compiled);
+            var iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return compiled;
+    }
+
+    private static CompiledQuery compile(String queryText) {
+        var query = QueryFactory.create(queryText);
+        if (!query.isSelectType()) {
+            throw new IllegalArgumentException("Only SPARQL select queries are supported.");
+        }
+        // Fix the result variables (of "select *" queries) so that the query is no longer modified when executed.
+        query.setResultVars();
+        return new CompiledQuery(query, Algebra.optimize(Algebra.compile(query)));
+    }
+
+    /**
+     * A select query compiled to optimised algebra. Compiled queries are immutable and executed concurrently.
+     *
+     * @param query The parsed query.
+     * @param op The optimised algebra of the query.
+     */
+    public record CompiledQuery(Query query, Op op) {
+
+        /**
+         * Execute the query.
+         *
+         * @param dataset The dataset to query.
+         * @return The results (to be closed if not consumed completely).
+         */
+        public ResultSet execute(DatasetGraph dataset) {
+            return execute(dataset, new QuerySolutionMap());
+        }
+
+        /**
+         * Execute the query with values for some of its variables.
+         *
+         * @param dataset The dataset to query.
+         * @param bindings The values of the variables.
+         * @return The results (to be closed if not consumed completely).
+         */
+        public ResultSet execute(DatasetGraph dataset, QuerySolutionMap bindings) {
+            return execute(dataset, bindings, 0, 0);
+        }
+
+        /**
+         * Execute the query with values for some of its variables, within limits.
+         *
+         * @param dataset The dataset to query.
+         * @param bindings The values of the variables.
+         * @param timeoutMillis The time after which the query is cancelled (0 for no timeout).
+         * @param maxRows The maximum number of rows (0 for no maximum).
+         * @return The results (to be closed if not consumed completely), raising a {@link QueryLimitException} when a
+         * limit is exceeded while they are read.
+         */
+        public ResultSet execute(DatasetGraph dataset, QuerySolutionMap bindings, long timeoutMillis, long maxRows) {
+            var target = query.hasDatasetDescription() ? DynamicDatasets.dynamicDataset(query.getDatasetDescription(), dataset, false) : dataset;
+            var boundOp = bindings.asMap().isEmpty() ? op : Substitute.substitute(op, toBinding(bindings));
+            var context = Context.setupContextForDataset(ARQ.getContext(), target);
+            var iterator = QueryEngineRegistry.findFactory(boundOp, target, context)
+                    .create(boundOp, target, BindingRoot.create(), context)
+                    .iterator();
+            if (timeoutMillis <= 0 && maxRows <= 0) {
+                return ResultSet.adapt(RowSet.create(iterator, query.getProjectVars()));
+            }
+            return ResultSet.adapt(new LimitedRowSet(iterator, query.getProjectVars(), timeoutMillis, maxRows));
+        }
+
+        private static Binding toBinding(QuerySolutionMap bindings) {
+            var builder = BindingFactory.builder();
+            bindings.asMap().forEach((name, value) -> builder.add(Var.alloc(name), value.asNode()));
+            return builder.build();
+        }
+    }
+
+    /**
+     * The rows of a query execution, cancelled once its timeout elapses and failing beyond its maximum number of rows.
+     */
+    private static final class LimitedRowSet implements RowSet {
+
+        private final QueryIterator iterator;
+        private final List<Var> vars;
+        private final long timeoutMillis;
+        private final long maxRows;
+        private final Alarm alarm;
+        private volatile boolean timedOut;
+        private long rows;
+
+        LimitedRowSet(QueryIterator iterator, List<Var> vars, long timeoutMillis, long maxRows) {
+            this.iterator = iterator;
+            this.vars = vars;
+            this.timeoutMillis = timeoutMillis;
+            this.maxRows = maxRows;
+            this.alarm = timeoutMillis > 0 ? AlarmClock.get().add(this::timeout, timeoutMillis) : null;
+        }
+
+        private void timeout() {
+            timedOut = true;
+            iterator.cancel();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                if (!iterator.hasNext()) {
+                    close();
+                    return false;
+                }
+            } catch (QueryCancelledException e) {
+                throw timedOut ? timeoutException() : e;
+            }
+            if (maxRows > 0 && rows >= maxRows) {
+                throw new QueryLimitException(String.format("The query returned more than the maximum of [%s] rows.", maxRows));
+            }
+            return true;
+        }
+
+        @Override
+        public Binding next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                rows++;
+                return iterator.next();
+            } catch (QueryCancelledException e) {
+                throw timedOut ? timeoutException() : e;
+            }
+        }
+
+        private QueryLimitException timeoutException() {
+            return new QueryLimitException(String.format("The query did not complete within [%s] ms and was cancelled.", timeoutMillis));
+        }
+
+        @Override
+        public List<Var> getResultVars() {
+            return vars;
+        }
+
+        @Override
+        public long getRowNumber() {
+            return rows;
+        }
+
+        @Override
+        public void close() {
+            if (alarm != null) {
+                AlarmClock.get().cancel(alarm);
+            }
+            iterator.close();
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package be.vlaanderen.ldes.handlers;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Adapts the number of pages a crawl fetches at the same time to the responsiveness of the server (AIMD).
+ * <p>
+ * The limit is increased by one after each window of responses whose 95th percentile latency stays under the target,
+ * and halved when that percentile exceeds the target or the server responds with 429 (Too Many Requests) or 503
+ * (Service Unavailable). A Retry-After header on such a response additionally pauses new requests for the indicated
+ * time. Every change is recorded as a {@link Decision}.
+ */
+public class ConcurrencyController {
+
+    /** Maximum number of decisions kept (older decisions are still counted in the statistics). */
+    private static final int MAX_DECISIONS = 1000;
+
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final long[] latencies;
+    private final long startNanos = System.nanoTime();
+    private final List<Decision> decisions = new ArrayList<>();
+    private int limit;
+    private int latencyCount;
+    private int samplesSinceDecision;
+    private long pauseUntilNanos;
+    private long lastDecreaseNanos;
+    private long increases;
+    private long decreases;
+    private long throttledResponses;
+    private long pausedMillis;
+    private long lastP95Millis;
+
+    /**
+     * Constructor.
+     *
+     * @param maxLimit The maximum number of pages to fetch at the same time (the crawl starts at half of it).
+     * @param latencyTarget The 95th percentile page latency to stay under.
+     * @param window The number of latencies the percentile is computed over.
+     */
+    public ConcurrencyController(int maxLimit, Duration latencyTarget, int window) {
+        if (maxLimit < 1 || window < 1) {
+            throw new IllegalArgumentException(String.format("The maximum concurrency and window must be positive [%s, %s].", maxLimit, window));
+        }
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.latencies = new long[window];
+        this.limit = Math.max(1, maxLimit / 2);
+        // Do not suppress the first decrease (System.nanoTime() has an arbitrary origin).
+        this.lastDecreaseNanos = startNanos - latencyTargetNanos;
+    }
+
+    /**
+     * @return The number of pages that may currently be fetched at the same time.
+     */
+    public synchronized int limit() {
+        return limit;
+    }
+
+    /**
+     * @return The time (in milliseconds) new requests must still wait for following a Retry-After header.
+     */
+    public synchronized long pauseMillis() {
+        return Math.max(0, Duration.ofNanos(pauseUntilNanos - System.nanoTime()).toMillis());
+    }
+
+    /**
+     * Record the response to a page request, adjusting the limit if needed.
+     *
+     * @param latency The time until the response was received.
+     * @param status The response's status code.
+     * @param retryAfter The delay requested by the server (if any).
+     */
+    public synchronized void onResponse(Duration latency, int status, Optional<Duration> retryAfter) {
+        if (status == 429 || status == 503) {
+            throttledResponses++;
+            retryAfter.ifPresent(delay -> {
+                var pauseUntil = System.nanoTime() + delay.toNanos();
+                if (pauseUntil > pauseUntilNanos) {
+                    pausedMillis += Duration.ofNanos(pauseUntil - Math.max(pauseUntilNanos, System.nanoTime())).toMillis();
+                    pauseUntilNanos = pauseUntil;
+                }
+            });
+            // Throttled responses to requests sent before the last decrease do not decrease the limit again.
+            if (System.nanoTime() - lastDecreaseNanos >= latencyTargetNanos) {
+                decrease(String.format("status %s%s", status, retryAfter.map(delay -> ", retry after " + delay.toSeconds() + "s").orElse("")));
+            }
+            return;
+        }
+        latencies[latencyCount++ % latencies.length] = latency.toNanos();
+        samplesSinceDecision++;
+        // Decide once per round of requests (and once the window has enough samples).
+        if (samplesSinceDecision >= Math.max(limit, Math.min(latencies.length, 5))) {
+            var p95 = p95Nanos();
+            lastP95Millis = Duration.ofNanos(p95).toMillis();
+            if (p95 > latencyTargetNanos) {
+                decrease(String.format("p95 latency %sms", lastP95Millis));
+            } else if (limit < maxLimit) {
+                limit++;
+                increases++;
+                record("increase", String.format("p95 latency %sms", lastP95Millis));
+            } else {
+                samplesSinceDecision = 0;
+            }
+        }
+    }
+
+    /**
+     * @return The controller's statistics.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(limit, maxLimit, increases, decreases, throttledResponses, lastP95Millis, pausedMillis);
+    }
+
+    /**
+     * @return The recorded decisions (up to the last thousand).
+     */
+    public synchronized List<Decision> getDecisions() {
+        return List.copyOf(decisions);
+    }
+
+    /**
+     * Parse the Retry-After header of a response (as a number of seconds or an HTTP date).
+     *
+     * @param headers The response headers.
+     * @return The requested delay (if any).
+     */
+    public static Optional<Duration> retryAfter(HttpHeaders headers) {
+        return headers.firstValue("Retry-After").flatMap(value -> {
+            try {
+                return Optional.of(Duration.ofSeconds(Long.parseLong(value.trim())));
+            } catch (NumberFormatException e) {
+                try {
+                    var date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    var delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                    return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+                } catch (DateTimeParseException ex) {
+                    return Optional.empty();
+                }
+            }
+        });
+    }
+
+    private void decrease(String reason) {
+        // Latencies observed before the decrease do not reflect the new limit.
+        latencyCount = 0;
+        lastDecreaseNanos = System.nanoTime();
+        if (limit == 1) {
+            samplesSinceDecision = 0;
+            return;
+        }
+        limit = Math.max(1, limit / 2);
+        decreases++;
+        record("decrease", reason);
+    }
+
+    private void record(String action, String reason) {
+        samplesSinceDecision = 0;
+        if (decisions.size() == MAX_DECISIONS) {
+            decisions.remove(0);
+        }
+        decisions.add(new Decision(Duration.ofNanos(System.nanoTime() - startNanos).toMillis(), action, limit, reason));
+    }
+
+    private long p95Nanos() {
+        var count = Math.min(latencyCount, latencies.length);
+        if (count == 0) {
+            return 0;
+        }
+        var sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(count * 0.95) - 1];
+    }
+
+    /**
+     * A change of the concurrency limit.
+     *
+     * @param elapsedMillis The time since the start of the crawl.
+     * @param action "increase" or "decrease".
+     * @param limit The new limit.
+     * @param reason The observation that triggered the change.
+     */
+    public record Decision(long elapsedMillis, String action, int limit, String reason) {
+
+        @Override
+        public String toString() {
+            return String.format("+%sms %s to %s (%s)", elapsedMillis, action, limit, reason);
+        }
+    }
+
+    /**
+     * The controller's statistics.
+     *
+     * @param limit The current limit.
+     * @param maxLimit The maximum limit.
+     * @param increases The number of increases.
+     * @param decreases The number of decreases.
+     * @param throttledResponses The number of 429 and 503 responses.
+     * @param p95LatencyMillis The last computed 95th percentile latency.
+     * @param pausedMillis The total time requests were paused for following Retry-After headers.
+     */
+    public record Statistics(int limit, int maxLimit, long increases, long decreases, long throttledResponses, long p95LatencyMillis, long pausedMillis) {}
+
+}
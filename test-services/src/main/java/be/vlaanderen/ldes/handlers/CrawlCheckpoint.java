@@ -0,0 +1,228 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The on-disk checkpoint of a crawl, from which a failed (or interrupted) crawl can be resumed.
+ * <p>
+ * A checkpoint is a directory named after the crawl id that holds:
+ * <ul>
+ *     <li>the page graphs, as N-Quads batches ("pages-N.nq") with one named graph per page URL and the metadata of
+ *     the batch's pages in the {@link CrawlLayout#METADATA_GRAPH},</li>
+ *     <li>the frontier's pending URLs ("frontier-N.txt") and scheduled URL fingerprints ("scheduled-N.bin"),</li>
+ *     <li>a manifest ("checkpoint.properties") that is replaced atomically and refers to the complete state.</li>
+ * </ul>
+ * Files are only referred to by the manifest once fully written, so a crash while saving leaves the previous
+ * checkpoint intact. The checkpoint is deleted once the crawl completes.
+ */
+public class CrawlCheckpoint {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(CrawlCheckpoint.class);
+    /** Accepted crawl ids (these are used as directory names). */
+    private static final Pattern CRAWL_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String MANIFEST = "checkpoint.properties";
+
+    private final Path directory;
+    private final String crawlId;
+    private final String viewUri;
+    private final int intervalPages;
+    private final Duration interval;
+    private Dataset unsavedPages = DatasetFactory.createGeneral();
+    private int unsavedPageCount;
+    private Instant lastSave = Instant.now();
+    private long sequence;
+    private int batchCount;
+
+    /**
+     * Constructor.
+     *
+     * @param root The directory holding the checkpoints of all crawls.
+     * @param crawlId The id of the crawl.
+     * @param viewUri The URI of the crawled view.
+     * @param intervalPages The number of crawled pages after which a checkpoint is due.
+     * @param interval The time after which a checkpoint is due.
+     */
+    public CrawlCheckpoint(Path root, String crawlId, String viewUri, int intervalPages, Duration interval) {
+        if (!CRAWL_ID.matcher(crawlId).matches()) {
+            throw new IllegalArgumentException(String.format("Invalid crawl id [%s].", crawlId));
+        }
+        this.directory = root.resolve(crawlId);
+        this.crawlId = crawlId;
+        this.viewUri = viewUri;
+        this.intervalPages = intervalPages;
+        this.interval = interval;
+    }
+
+    /**
+     * @return The id of the crawl.
+     */
+    public String getCrawlId() {
+        return crawlId;
+    }
+
+    /**
+     * Restore the state of a previous run of the crawl (if any).
+     *
+     * @param frontier The frontier to restore the pending and scheduled URLs into.
+     * @return The pages crawled so far, with one named graph per page URL and their metadata in the
+     * {@link CrawlLayout#METADATA_GRAPH} (empty if the crawl was not checkpointed before).
+     */
+    public Dataset restore(CrawlFrontier frontier) {
+        var pages = DatasetFactory.createGeneral();
+        var pageCount = 0;
+        var manifestFile = directory.resolve(MANIFEST);
+        if (!Files.exists(manifestFile)) {
+            return pages;
+        }
+        try {
+            var manifest = new Properties();
+            try (var reader = Files.newBufferedReader(manifestFile)) {
+                manifest.load(reader);
+            }
+            if (!viewUri.equals(manifest.getProperty("viewUri"))) {
+                throw new IllegalArgumentException(String.format("Crawl [%s] was started for a different view [%s].", crawlId, manifest.getProperty("viewUri")));
+            }
+            sequence = Long.parseLong(manifest.getProperty("sequence"));
+            batchCount = Integer.parseInt(manifest.getProperty("batches"));
+            frontier.load(directory.resolve("frontier-" + sequence + ".txt"), directory.resolve("scheduled-" + sequence + ".bin"));
+            for (int batch = 1; batch <= batchCount; batch++) {
+                // Each batch is parsed separately, so blank node labels are scoped to their batch.
+                var dataset = DatasetFactory.createGeneral();
+                RDFDataMgr.read(dataset, directory.resolve("pages-" + batch + ".nq").toString(), Lang.NQUADS);
+                for (var name : (Iterable<String>) dataset::listNames) {
+                    pages.getNamedModel(name).add(dataset.getNamedModel(name));
+                    if (!name.equals(CrawlLayout.METADATA_GRAPH)) {
+                        pageCount++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to restore the checkpoint of crawl [%s].", crawlId), e);
+        }
+        LOG.info("Resuming crawl [{}] from {} crawled and {} pending pages.", crawlId, pageCount, frontier.pendingCount());
+        return pages;
+    }
+
+    /**
+     * Record a crawled page, to be written with the next checkpoint.
+     *
+     * @param url The page's URL.
+     * @param graph The page's graph.
+     * @param metadata The page's metadata.
+     */
+    public void addPage(String url, Model graph, Model metadata) {
+        unsavedPages.addNamedModel(url, graph);
+        unsavedPages.getNamedModel(CrawlLayout.METADATA_GRAPH).add(metadata);
+        unsavedPageCount++;
+    }
+
+    /**
+     * @return True if enough pages were crawled or enough time passed since the last checkpoint.
+     */
+    public boolean isDue() {
+        return unsavedPageCount >= intervalPages || (unsavedPageCount > 0 && Duration.between(lastSave, Instant.now()).compareTo(interval) >= 0);
+    }
+
+    /**
+     * Write a checkpoint.
+     *
+     * @param frontier The crawl's frontier.
+     * @param inFlight The URLs taken from the frontier that were not crawled yet.
+     */
+    public void save(CrawlFrontier frontier, Collection<String> inFlight) {
+        try {
+            Files.createDirectories(directory);
+            if (unsavedPageCount > 0) {
+                var batchFile = directory.resolve("pages-" + (batchCount + 1) + ".nq");
+                try (var output = Files.newOutputStream(batchFile)) {
+                    RDFDataMgr.write(output, unsavedPages, Lang.NQUADS);
+                }
+                batchCount++;
+                unsavedPages = DatasetFactory.createGeneral();
+                unsavedPageCount = 0;
+            }
+            var previousSequence = sequence++;
+            frontier.save(directory.resolve("frontier-" + sequence + ".txt"), directory.resolve("scheduled-" + sequence + ".bin"), inFlight);
+            var manifest = new Properties();
+            manifest.setProperty("viewUri", viewUri);
+            manifest.setProperty("sequence", String.valueOf(sequence));
+            manifest.setProperty("batches", String.valueOf(batchCount));
+            var tempManifest = directory.resolve(MANIFEST + ".tmp");
+            try (var writer = Files.newBufferedWriter(tempManifest)) {
+                manifest.store(writer, null);
+            }
+            Files.move(tempManifest, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(directory.resolve("frontier-" + previousSequence + ".txt"));
+            Files.deleteIfExists(directory.resolve("scheduled-" + previousSequence + ".bin"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to checkpoint crawl [%s].", crawlId), e);
+        }
+        lastSave = Instant.now();
+        LOG.debug("Checkpointed crawl [{}] ({} pending pages).", crawlId, frontier.pendingCount() + inFlight.size());
+    }
+
+    /**
+     * Remove the checkpoint of a completed crawl.
+     */
+    public void delete() {
+        try {
+            deleteDirectory(directory);
+        } catch (IOException e) {
+            LOG.warn("Unable to remove the checkpoint of crawl [{}].", crawlId, e);
+        }
+    }
+
+    /**
+     * Remove the checkpoints that were not updated within the given retention period.
+     *
+     * @param root The directory holding the checkpoints of all crawls.
+     * @param retention The retention period.
+     */
+    public static void purgeExpired(Path root, Duration retention) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        var threshold = FileTime.from(Instant.now().minus(retention));
+        try (Stream<Path> checkpoints = Files.list(root)) {
+            for (var checkpoint : checkpoints.toList()) {
+                var manifest = checkpoint.resolve(MANIFEST);
+                if (Files.exists(manifest) && Files.getLastModifiedTime(manifest).compareTo(threshold) < 0) {
+                    LOG.info("Removing expired crawl checkpoint [{}].", checkpoint.getFileName());
+                    deleteDirectory(checkpoint);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to remove expired crawl checkpoints.", e);
+        }
+    }
+
+    private static void deleteDirectory(Path checkpoint) throws IOException {
+        if (!Files.isDirectory(checkpoint)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(checkpoint)) {
+            for (var file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(checkpoint);
+    }
+
+}
@@ -0,0 +1,29 @@
+package be.vlaanderen.ldes.handlers;
+
+/**
+ * Exception raised when a crawl fails, identifying the checkpoint the crawl can be resumed from.
+ */
+public class CrawlException extends IllegalStateException {
+
+    private final String crawlId;
+
+    /**
+     * Constructor.
+     *
+     * @param message The error message.
+     * @param crawlId The id of the crawl's checkpoint (null if the crawl was not checkpointed).
+     * @param cause The cause of the failure.
+     */
+    public CrawlException(String message, String crawlId, Throwable cause) {
+        super(message, cause);
+        this.crawlId = crawlId;
+    }
+
+    /**
+     * @return The id to pass to resume the crawl (null if the crawl was not checkpointed).
+     */
+    public String getCrawlId() {
+        return crawlId;
+    }
+
+}
@@ -0,0 +1,377 @@
+package be.vlaanderen.ldes.handlers;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * The frontier of a crawl: the pages still to fetch and the pages already scheduled.
+ * <p>
+ * URLs are normalised and deduplicated on a 64-bit fingerprint kept in an open-addressing hash set, so that scheduling
+ * a URL is a constant-time operation and a seen URL costs eight bytes of heap. Pending URLs are kept in memory up to a
+ * threshold, after which they are spilled to a local file and read back in order.
+ */
+public class CrawlFrontier implements AutoCloseable {
+
+    /** Default number of pending URLs kept in memory before spilling to disk. */
+    public static final int DEFAULT_SPILL_THRESHOLD = 10_000;
+
+    private final FingerprintSet scheduled = new FingerprintSet();
+    private final Deque<String> pending = new ArrayDeque<>();
+    private final int spillThreshold;
+    private Path spillFile;
+    private BufferedWriter spillWriter;
+    private BufferedReader spillReader;
+    private long spilledCount;
+    private long spillWrittenCount;
+
+    /**
+     * Create a frontier that spills at the default threshold.
+     */
+    public CrawlFrontier() {
+        this(DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param spillThreshold The number of pending URLs to keep in memory before spilling to disk.
+     */
+    public CrawlFrontier(int spillThreshold) {
+        if (spillThreshold < 1) {
+            throw new IllegalArgumentException(String.format("The spill threshold must be positive [%s].", spillThreshold));
+        }
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Schedule a URL unless it (or an equivalent URL) was scheduled before.
+     *
+     * @param url The URL to schedule.
+     * @return True if the URL was scheduled.
+     */
+    public synchronized boolean offer(String url) {
+        if (!scheduled.add(fingerprint(normalise(url)))) {
+            return false;
+        }
+        enqueue(url);
+        return true;
+    }
+
+    /**
+     * Take the next URL to fetch.
+     *
+     * @return The URL or null if no URLs are pending.
+     */
+    public synchronized String poll() {
+        if (pending.isEmpty() && spilledCount > 0) {
+            readSpilled();
+        }
+        return pending.poll();
+    }
+
+    /**
+     * @return True if no URLs are pending.
+     */
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty() && spilledCount == 0;
+    }
+
+    /**
+     * @return The number of pending URLs.
+     */
+    public synchronized long pendingCount() {
+        return pending.size() + spilledCount;
+    }
+
+    /**
+     * @return The number of distinct URLs scheduled so far.
+     */
+    public synchronized long scheduledCount() {
+        return scheduled.size();
+    }
+
+    /**
+     * Save the state of the frontier so that it can be restored with {@link #load(Path, Path)}.
+     *
+     * @param pendingFile The file to write the pending URLs to (one per line).
+     * @param scheduledFile The file to write the fingerprints of the scheduled URLs to.
+     * @param inFlight URLs taken from the frontier that were not completed yet (saved ahead of the pending URLs).
+     * @throws IOException If the files cannot be written.
+     */
+    public synchronized void save(Path pendingFile, Path scheduledFile, Collection<String> inFlight) throws IOException {
+        try (var writer = Files.newBufferedWriter(pendingFile, StandardCharsets.UTF_8)) {
+            for (var url : inFlight) {
+                writer.write(url);
+                writer.newLine();
+            }
+            for (var url : pending) {
+                writer.write(url);
+                writer.newLine();
+            }
+            if (spilledCount > 0) {
+                spillWriter.flush();
+                try (var reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                    // Skip the lines that were already read back.
+                    for (long i = 0; i < spillWrittenCount - spilledCount; i++) {
+                        reader.readLine();
+                    }
+                    String url;
+                    while ((url = reader.readLine()) != null) {
+                        writer.write(url);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(scheduledFile)))) {
+            output.writeInt(scheduled.size());
+            scheduled.forEach(fingerprint -> {
+                try {
+                    output.writeLong(fingerprint);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replace the state of the frontier by the state saved with {@link #save(Path, Path, Collection)}.
+     *
+     * @param pendingFile The file with the pending URLs.
+     * @param scheduledFile The file with the fingerprints of the scheduled URLs.
+     * @throws IOException If the files cannot be read.
+     */
+    public synchronized void load(Path pendingFile, Path scheduledFile) throws IOException {
+        closeSpillFile();
+        pending.clear();
+        scheduled.clear();
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(scheduledFile)))) {
+            var count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                scheduled.add(input.readLong());
+            }
+        }
+        try (var reader = Files.newBufferedReader(pendingFile, StandardCharsets.UTF_8)) {
+            String url;
+            while ((url = reader.readLine()) != null) {
+                enqueue(url);
+            }
+        }
+    }
+
+    /**
+     * Remove the spill file (if any).
+     */
+    @Override
+    public synchronized void close() {
+        closeSpillFile();
+        pending.clear();
+    }
+
+    /**
+     * Normalise a URL so that equivalent URLs are only fetched once.
+     * <p>
+     * The scheme and host are lower-cased, default ports and fragments are dropped, dot segments are resolved and an
+     * empty path is replaced by "/". URLs that cannot be parsed are returned as-is.
+     *
+     * @param url The URL to normalise.
+     * @return The normalised URL.
+     */
+    public static String normalise(String url) {
+        URI uri;
+        try {
+            uri = new URI(url).normalize();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+        if (uri.isOpaque() || uri.getHost() == null) {
+            return uri.toString();
+        }
+        var scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        var port = uri.getPort();
+        if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+            port = -1;
+        }
+        var result = new StringBuilder(url.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            result.append(uri.getRawUserInfo()).append('@');
+        }
+        result.append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (port != -1) {
+            result.append(':').append(port);
+        }
+        result.append(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+        if (uri.getRawQuery() != null) {
+            result.append('?').append(uri.getRawQuery());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Compute the 64-bit fingerprint of a (normalised) URL (FNV-1a followed by a MurmurHash3 finaliser).
+     */
+    static long fingerprint(String url) {
+        var hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void enqueue(String url) {
+        if (spilledCount > 0 || pending.size() >= spillThreshold) {
+            spill(url);
+        } else {
+            pending.add(url);
+        }
+    }
+
+    private void spill(String url) {
+        try {
+            if (spillFile == null) {
+                spillFile = Files.createTempFile("crawl-frontier-", ".txt");
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+            }
+            spillWriter.write(url);
+            spillWriter.newLine();
+            spilledCount++;
+            spillWrittenCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while spilling the crawl frontier to disk.", e);
+        }
+    }
+
+    private void readSpilled() {
+        try {
+            spillWriter.flush();
+            if (spillReader == null) {
+                spillReader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+            }
+            while (pending.size() < spillThreshold && spilledCount > 0) {
+                pending.add(spillReader.readLine());
+                spilledCount--;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while reading the spilled crawl frontier.", e);
+        }
+        if (spilledCount == 0) {
+            // Everything was read back, so start over with a new file if needed.
+            closeSpillFile();
+        }
+    }
+
+    private void closeSpillFile() {
+        if (spillFile != null) {
+            try {
+                if (spillReader != null) {
+                    spillReader.close();
+                }
+                spillWriter.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error while removing the crawl frontier's spill file.", e);
+            } finally {
+                spillFile = null;
+                spillWriter = null;
+                spillReader = null;
+                spilledCount = 0;
+                spillWrittenCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Open-addressing (linear probing) hash set of 64-bit fingerprints.
+     */
+    private static class FingerprintSet {
+
+        private long[] table = new long[1024];
+        private boolean containsZero;
+        private int size;
+
+        boolean add(long fingerprint) {
+            if (fingerprint == 0) {
+                // Zero marks empty slots so it is tracked separately.
+                if (containsZero) {
+                    return false;
+                }
+                containsZero = true;
+                size++;
+                return true;
+            }
+            if ((size + 1) * 2L > table.length) {
+                resize();
+            }
+            if (insert(table, fingerprint)) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            table = new long[1024];
+            containsZero = false;
+            size = 0;
+        }
+
+        void forEach(LongConsumer action) {
+            if (containsZero) {
+                action.accept(0);
+            }
+            for (var fingerprint : table) {
+                if (fingerprint != 0) {
+                    action.accept(fingerprint);
+                }
+            }
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            var mask = table.length - 1;
+            var index = (int) mix(fingerprint) & mask;
+            while (table[index] != 0) {
+                if (table[index] == fingerprint) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            table[index] = fingerprint;
+            return true;
+        }
+
+        private void resize() {
+            var newTable = new long[table.length * 2];
+            for (var fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(newTable, fingerprint);
+                }
+            }
+            table = newTable;
+        }
+    }
+
+}
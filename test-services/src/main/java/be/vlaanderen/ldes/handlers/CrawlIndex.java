@@ -0,0 +1,193 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.CRAWL;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.util.ModelUtils;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.*;
+
+/**
+ * Index of the TREE relations, page members and member property values of a crawl result, shared by the relation
+ * validation handlers.
+ * <p>
+ * The crawl result is scanned once to collect the tree:Node subjects with their relations, the members of the event
+ * streams of each page and (for the nested layout) the original subjects and pages of the nested blank nodes. The
+ * relations' details and the values of their property paths are then read through indexed lookups (once per relation
+ * and once per distinct path). Validating a relation thus looks up its members and their values in maps rather than
+ * running a query per relation and per member, which grows quadratically with the view.
+ * <p>
+ * Both crawl layouts are supported: pages are identified by the subjects linked through crawl:has_contents in the
+ * nested layout and by the graph names in the named-graph layout. Values are provided in the string form of Jena's
+ * RDF nodes (e.g. "value^^datatype" for typed literals), as produced by the handlers' former queries.
+ */
+public final class CrawlIndex {
+
+    /** ldes:EventStream */
+    private static final Node EVENT_STREAM = NodeFactory.createURI("https://w3id.org/ldes#EventStream");
+    /** tree:member */
+    private static final Node MEMBER = NodeFactory.createURI(TreeRelations.NS + "member");
+    /** tree:value */
+    private static final Node VALUE = NodeFactory.createURI(TreeRelations.NS + "value");
+    /** tree:path */
+    private static final Node PATH = NodeFactory.createURI(TreeRelations.NS + "path");
+
+    private final List<Relation> relations;
+    private final Map<String, List<String>> membersByPage;
+    private final Map<String, Map<String, List<String>>> valuesByMember;
+
+    private CrawlIndex(List<Relation> relations, Map<String, List<String>> membersByPage, Map<String, Map<String, List<String>>> valuesByMember) {
+        this.relations = relations;
+        this.membersByPage = membersByPage;
+        this.valuesByMember = valuesByMember;
+    }
+
+    /**
+     * Build the index of a crawl result.
+     *
+     * @param dataset The crawl result (to be accessed within a transaction if it is transactional).
+     * @param layout The crawl result's layout.
+     * @return The index.
+     */
+    public static CrawlIndex build(Dataset dataset, CrawlLayout layout) {
+        var graph = dataset.asDatasetGraph();
+        var metadataGraph = NodeFactory.createURI(CrawlLayout.METADATA_GRAPH);
+        var originalSubjects = new HashMap<Node, Node>();
+        var pagesOfContents = new HashMap<Node, Node>();
+        var nodeRelations = new LinkedHashMap<Scoped, List<Node>>();
+        var treeNodes = new HashSet<Scoped>();
+        var streamMembers = new LinkedHashMap<Scoped, List<Node>>();
+        var streams = new HashSet<Scoped>();
+        // Single scan of the crawl result.
+        graph.find().forEachRemaining(quad -> {
+            if (quad.getGraph().equals(metadataGraph)) {
+                return;
+            }
+            var subject = new Scoped(quad.getGraph(), quad.getSubject());
+            var predicate = quad.getPredicate();
+            var object = quad.getObject();
+            if (predicate.equals(RDF.Nodes.type)) {
+                if (object.equals(TreeRelations.NODE_TYPE)) {
+                    treeNodes.add(subject);
+                } else if (object.equals(EVENT_STREAM)) {
+                    streams.add(subject);
+                }
+            } else if (predicate.equals(TreeRelations.RELATION)) {
+                nodeRelations.computeIfAbsent(subject, key -> new ArrayList<>()).add(object);
+            } else if (predicate.equals(MEMBER)) {
+                streamMembers.computeIfAbsent(subject, key -> new ArrayList<>()).add(object);
+            } else if (layout == CrawlLayout.NESTED && predicate.equals(RDF.Nodes.subject)) {
+                originalSubjects.put(quad.getSubject(), object);
+            } else if (layout == CrawlLayout.NESTED && predicate.equals(CRAWL.hasContents.asNode())) {
+                pagesOfContents.put(object, quad.getSubject());
+            }
+        });
+        // The relations of the tree:Node subjects (as distinct combinations of their types, nodes, values and paths).
+        var relations = new LinkedHashSet<Relation>();
+        nodeRelations.forEach((node, relationNodes) -> {
+            if (!treeNodes.contains(node)) {
+                return;
+            }
+            var page = asString(originalSubjects.getOrDefault(node.node(), node.node()));
+            for (var relationNode : relationNodes) {
+                var types = objects(graph, node.graph(), relationNode, RDF.Nodes.type);
+                var targets = objects(graph, node.graph(), relationNode, TreeRelations.NODE);
+                var values = objects(graph, node.graph(), relationNode, VALUE);
+                var paths = objects(graph, node.graph(), relationNode, PATH);
+                for (var type : types) {
+                    for (var target : targets) {
+                        for (var value : values) {
+                            for (var path : paths) {
+                                relations.add(new Relation(page, asString(type), asString(value), asString(path), asString(target)));
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        // The members of each page.
+        var pageMembers = new HashMap<String, Set<String>>();
+        streamMembers.forEach((stream, members) -> {
+            if (!streams.contains(stream)) {
+                return;
+            }
+            var page = layout == CrawlLayout.GRAPHS ? stream.graph() : pagesOfContents.get(stream.node());
+            if (page != null && page.isURI()) {
+                var distinctMembers = pageMembers.computeIfAbsent(page.getURI(), key -> new LinkedHashSet<>());
+                members.forEach(member -> distinctMembers.add(asString(member)));
+            }
+        });
+        var membersByPage = new HashMap<String, List<String>>();
+        pageMembers.forEach((page, members) -> membersByPage.put(page, List.copyOf(members)));
+        // The values of the relations' property paths, looked up once per distinct path.
+        var valuesByMember = new HashMap<String, Map<String, List<String>>>();
+        relations.stream().map(Relation::relationPath).distinct().forEach(path -> {
+            var pathNode = NodeFactory.createURI(path);
+            graph.find(Node.ANY, Node.ANY, pathNode, Node.ANY).forEachRemaining(quad -> {
+                var member = asString(originalSubjects.getOrDefault(quad.getSubject(), quad.getSubject()));
+                valuesByMember.computeIfAbsent(member, key -> new HashMap<>())
+                        .computeIfAbsent(path, key -> new ArrayList<>())
+                        .add(asString(quad.getObject()));
+            });
+        });
+        return new CrawlIndex(List.copyOf(relations), membersByPage, valuesByMember);
+    }
+
+    /**
+     * @return The TREE relations of the crawled pages.
+     */
+    public List<Relation> relations() {
+        return relations;
+    }
+
+    /**
+     * Get the members of a crawled page.
+     *
+     * @param page The page's URL.
+     * @return The member subjects (empty if the page was not crawled or has no members).
+     */
+    public List<String> members(String page) {
+        return membersByPage.getOrDefault(page, List.of());
+    }
+
+    /**
+     * Get the values of a member's property (in any of the crawled pages).
+     *
+     * @param member The member's subject.
+     * @param path The property, one of the relations' paths.
+     * @return The values (empty if the member does not define the property).
+     */
+    public List<String> values(String member, String path) {
+        return valuesByMember.getOrDefault(member, Map.of()).getOrDefault(path, List.of());
+    }
+
+    private static List<Node> objects(DatasetGraph graph, Node graphName, Node subject, Node predicate) {
+        var objects = new ArrayList<Node>();
+        graph.find(graphName, subject, predicate, Node.ANY).forEachRemaining(quad -> objects.add(quad.getObject()));
+        return objects;
+    }
+
+    private static String asString(Node node) {
+        return ModelUtils.convertGraphNodeToRDFNode(node).toString();
+    }
+
+    /**
+     * A node within the graph it occurs in (blank nodes and page contents are scoped to their page's graph).
+     */
+    private record Scoped(Node graph, Node node) {}
+
+    /**
+     * A TREE relation of a crawled page.
+     *
+     * @param page The subject of the page's tree:Node.
+     * @param relationType The relation's type.
+     * @param relationValue The relation's value.
+     * @param relationPath The property path of the relation.
+     * @param relatedPage The URL of the related page.
+     */
+    public record Relation(String page, String relationType, String relationValue, String relationPath, String relatedPage) {}
+
+}
@@ -0,0 +1,38 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.CRAWL;
+
+/**
+ * The ways of laying out the crawled pages in the crawl result.
+ */
+public enum CrawlLayout {
+
+    /**
+     * All pages in a single graph, the named subjects of each page replaced by blank nodes linked to the page
+     * (crawl:has_contents) that record the original subject (rdf:subject).
+     */
+    NESTED,
+    /**
+     * One named graph per page, named after the page URL and holding the page's triples with their original subjects,
+     * and the page metadata (type and response headers) in the {@link #METADATA_GRAPH}. Serialised as TriG or N-Quads.
+     */
+    GRAPHS;
+
+    /** The name of the graph holding the page metadata in the {@link #GRAPHS} layout. */
+    public static final String METADATA_GRAPH = CRAWL.uri + "crawl-metadata";
+
+    /**
+     * Parse a layout from its (case-insensitive) name.
+     *
+     * @param name The name ("nested" or "graphs").
+     * @return The layout.
+     */
+    public static CrawlLayout fromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "nested" -> NESTED;
+            case "graphs" -> GRAPHS;
+            default -> throw new IllegalArgumentException(String.format("Unexpected layout [%s].", name));
+        };
+    }
+
+}
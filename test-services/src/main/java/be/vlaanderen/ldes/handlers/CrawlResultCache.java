@@ -0,0 +1,185 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of crawl results shared by all test sessions.
+ * <p>
+ * Results are typically artifact handles (see {@link be.vlaanderen.ldes.artifacts.ArtifactStore}), so the memory budget
+ * only matters for results that are kept inline.
+ * <p>
+ * Results are cached per view URI (and variant of the result) for a limited time and within a memory budget (least recently used results are
+ * evicted first). Concurrent requests to crawl the same view are merged into a single crawl whose result is shared
+ * with all callers (single-flight). All results of a server are invalidated when data is posted to that server.
+ * <p>
+ * Results are returned with the id of the crawl that produced them, so that callers served from the cache (or joining
+ * a crawl in progress) report the id of an actual crawl and checkpoint.
+ */
+@Component
+public class CrawlResultCache {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(CrawlResultCache.class);
+
+    @Value("${crawler.resultCache.ttlSeconds:300}")
+    private long ttlSeconds;
+    @Value("${crawler.resultCache.maxEntries:16}")
+    private int maxEntries;
+    @Value("${crawler.resultCache.maxSizeMb:256}")
+    private long maxSizeMb;
+
+    private final Map<String, CompletableFuture<CrawlResult>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Long> serverGenerations = new ConcurrentHashMap<>();
+    /** The cached results in least recently used order (guarded by this). */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+
+    /**
+     * Get the crawl result of a view, crawling it if it is not cached.
+     *
+     * @param viewUri The URI of the view.
+     * @param crawlId The id of the crawl to carry out if needed.
+     * @param crawl The crawl to carry out if needed.
+     * @return The crawl result.
+     */
+    public CrawlResult get(String viewUri, String crawlId, Supplier<String> crawl) {
+        return get(viewUri, "", crawlId, crawl);
+    }
+
+    /**
+     * Get a variant of the crawl result of a view (such as a different storage or layout), crawling it if it is not
+     * cached.
+     *
+     * @param viewUri The URI of the view.
+     * @param variant The variant of the result (empty for the default).
+     * @param crawlId The id of the crawl to carry out if needed.
+     * @param crawl The crawl to carry out if needed.
+     * @return The crawl result, with the id of the crawl that produced it (which differs from the given one if the
+     * result was cached or crawled for another request).
+     */
+    public CrawlResult get(String viewUri, String variant, String crawlId, Supplier<String> crawl) {
+        var key = variant.isEmpty() ? viewUri : viewUri + " " + variant;
+        var cached = lookup(key);
+        if (cached != null) {
+            LOG.info("Reusing cached crawl result for [{}].", key);
+            return cached;
+        }
+        var future = new CompletableFuture<CrawlResult>();
+        var existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            LOG.info("Waiting for the crawl of [{}] already in progress.", key);
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            var generation = serverGenerations.getOrDefault(serverOf(key), 0L);
+            var result = new CrawlResult(crawl.get(), crawlId);
+            store(key, result, generation);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Invalidate the cached results of all views of the server of the given endpoint.
+     *
+     * @param endpoint An endpoint of the server whose data changed.
+     */
+    public void invalidate(String endpoint) {
+        var server = serverOf(endpoint);
+        serverGenerations.merge(server, 1L, Long::sum);
+        synchronized (this) {
+            var iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (server.equals(serverOf(entry.getKey()))) {
+                    totalSize -= entry.getValue().size();
+                    iterator.remove();
+                    LOG.info("Invalidated cached crawl result for [{}].", entry.getKey());
+                }
+            }
+        }
+        // New requests must not join crawls that may have missed the change.
+        inFlight.keySet().removeIf(viewUri -> server.equals(serverOf(viewUri)));
+    }
+
+    private synchronized CrawlResult lookup(String viewUri) {
+        var entry = entries.get(viewUri);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt() > ttlSeconds * 1000) {
+            entries.remove(viewUri);
+            totalSize -= entry.size();
+            return null;
+        }
+        return entry.result();
+    }
+
+    private synchronized void store(String viewUri, CrawlResult result, long generation) {
+        if (serverGenerations.getOrDefault(serverOf(viewUri), 0L) != generation) {
+            // The server's data changed while crawling.
+            return;
+        }
+        var entry = new Entry(result, System.currentTimeMillis(), result.result().length() * 2L);
+        if (entry.size() > maxSizeMb * 1024 * 1024) {
+            return;
+        }
+        var previous = entries.put(viewUri, entry);
+        totalSize += entry.size() - (previous == null ? 0 : previous.size());
+        var iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalSize > maxSizeMb * 1024 * 1024) && iterator.hasNext()) {
+            var eldest = iterator.next();
+            totalSize -= eldest.getValue().size();
+            iterator.remove();
+        }
+    }
+
+    private static String serverOf(String key) {
+        // Keys are view URIs optionally followed by a space and the variant.
+        var uri = key.split(" ", 2)[0];
+        try {
+            var parsed = URI.create(uri);
+            return parsed.getScheme() + "://" + parsed.getAuthority();
+        } catch (IllegalArgumentException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * The result of a crawl.
+     *
+     * @param result The result.
+     * @param crawlId The id of the crawl that produced the result.
+     */
+    public record CrawlResult(String result, String crawlId) {}
+
+    /**
+     * A cached crawl result.
+     *
+     * @param result The result.
+     * @param createdAt The time (epoch milliseconds) the result was produced.
+     * @param size The (approximate) size of the result in bytes.
+     */
+    private record Entry(CrawlResult result, long createdAt, long size) {}
+
+}
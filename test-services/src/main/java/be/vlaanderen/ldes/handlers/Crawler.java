@@ -1,21 +1,29 @@
 package be.vlaanderen.ldes.handlers;
 
 import be.vlaanderen.ldes.CRAWL;
-import org.apache.commons.io.IOUtils;
-import org.apache.jena.query.*;
+import be.vlaanderen.ldes.http.HttpCache;
+import be.vlaanderen.ldes.http.HttpClientService;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.system.Txn;
 import org.apache.jena.vocabulary.RDF;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 
@@ -26,65 +34,452 @@ import static java.time.temporal.ChronoUnit.SECONDS;
 
 
 public class Crawler {
-    private final Queue<String> urlQueue = new LinkedList<>();;
-    private final List<String> visitedURLs = new ArrayList<>();
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(Crawler.class);
+    /** Default maximum number of concurrent requests to a single host. */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+    /** Default Accept header, preferring the formats that are cheapest to parse. */
+    public static final String DEFAULT_ACCEPT = "application/rdf+protobuf, application/rdf+thrift, application/n-quads;q=0.9, application/n-triples;q=0.9, text/turtle;q=0.8, application/ld+json;q=0.5";
+
+    private final String startingUrl;
+    private final CrawlFrontier frontier;
 
     private final Model crawledGraph = ModelFactory.createDefaultModel() ;
+    private final HttpClientService httpClient;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private String accept = DEFAULT_ACCEPT;
+    private HttpCache cache;
+    private CrawlCheckpoint checkpoint;
+    private int maxAttempts = 1;
+    private Duration initialBackoff = Duration.ZERO;
+    private Duration maxBackoff = Duration.ZERO;
+    private Duration rateControlTarget;
+    private int rateControlWindow;
+    private ConcurrencyController rateControl;
+    private CrawlLayout layout = CrawlLayout.NESTED;
+    private Dataset dataset;
+
     public Crawler(String starting_url) {
-        urlQueue.add(starting_url);
-        visitedURLs.add(starting_url);
+        this(starting_url, HttpClientService.shared(), new CrawlFrontier());
+    }
+
+    public Crawler(String starting_url, HttpClientService httpClient, CrawlFrontier frontier) {
+        this.startingUrl = starting_url;
+        this.httpClient = httpClient;
+        this.frontier = frontier;
+        frontier.offer(starting_url);
+    }
+
+    /**
+     * Limit the number of requests in flight towards a single host when crawling concurrently.
+     *
+     * @param maxRequestsPerHost The maximum number of concurrent requests per host.
+     * @return This crawler.
+     */
+    public Crawler withMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException(String.format("The maximum number of requests per host must be positive [%s].", maxRequestsPerHost));
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    /**
+     * Set the Accept header sent when fetching pages (the preference list of RDF formats).
+     *
+     * @param accept The Accept header value.
+     * @return This crawler.
+     */
+    public Crawler withAccept(String accept) {
+        this.accept = accept;
+        return this;
+    }
+
+    /**
+     * Fetch pages through the given HTTP cache.
+     *
+     * @param cache The cache to use (null to always fetch pages from the server).
+     * @return This crawler.
+     */
+    public Crawler withCache(HttpCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Checkpoint the crawl so that it can be resumed if it fails, resuming from the checkpoint's state if present.
+     *
+     * @param checkpoint The checkpoint (null to not checkpoint the crawl).
+     * @return This crawler.
+     */
+    public Crawler withCheckpoint(CrawlCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Retry pages that fail to download (I/O errors and 429 or 5xx responses) with exponential backoff and jitter.
+     *
+     * @param maxAttempts The maximum number of attempts per page (1 to not retry).
+     * @param initialBackoff The delay before the first retry (doubled for each subsequent retry).
+     * @param maxBackoff The maximum delay between attempts.
+     * @return This crawler.
+     */
+    public Crawler withRetries(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException(String.format("The maximum number of attempts must be positive [%s].", maxAttempts));
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    /**
+     * Adapt the number of pages fetched at the same time by a concurrent crawl to the server's latency and throttling
+     * responses (see {@link ConcurrencyController}), the concurrency passed to {@link #run(int)} being the maximum.
+     *
+     * @param latencyTarget The 95th percentile page latency to stay under (null to fetch at a fixed concurrency).
+     * @param window The number of latencies the percentile is computed over.
+     * @return This crawler.
+     */
+    public Crawler withRateControl(Duration latencyTarget, int window) {
+        this.rateControlTarget = latencyTarget;
+        this.rateControlWindow = window;
+        return this;
+    }
+
+    /**
+     * @return The rate controller of the last concurrent run (null if the crawl was not rate controlled).
+     */
+    public ConcurrencyController getRateControl() {
+        return rateControl;
+    }
+
+    /**
+     * Store the crawled pages in a (disk-backed, transactional) dataset instead of in memory.
+     *
+     * @param dataset The dataset (null to keep the crawled pages in memory).
+     * @return This crawler.
+     */
+    public Crawler withDataset(Dataset dataset) {
+        this.dataset = dataset;
+        return this;
+    }
+
+    /**
+     * Set the layout of the crawled pages (see {@link CrawlLayout}).
+     *
+     * @param layout The layout.
+     * @return This crawler.
+     */
+    public Crawler withLayout(CrawlLayout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    /**
+     * @return The id to resume the crawl from if it fails (null if the crawl is not checkpointed).
+     */
+    public String getCrawlId() {
+        return checkpoint != null ? checkpoint.getCrawlId() : null;
     }
+
     public Crawler run() {
-        while(!urlQueue.isEmpty()) {
-            String pageUrl = urlQueue.remove();
-            try {
-                Model page = crawlPage(pageUrl);
-                crawledGraph.add(page);
+        restore();
+        String pageUrl = null;
+        try {
+            while ((pageUrl = frontier.poll()) != null) {
+                CrawledPage page = processPageWithRetries(pageUrl);
+                page.relations().forEach(frontier::offer);
+                store(page);
+                checkpoint(page, List.of());
             }
-            catch (Exception e) {
-                throw new RuntimeException(e);
+            if (checkpoint != null) {
+                // Nothing is left to resume.
+                checkpoint.delete();
             }
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure("Interrupted while crawling.", e, pageUrl != null ? List.of(pageUrl) : List.of());
+        }
+        catch (Exception e) {
+            throw failure(String.format("Unable to crawl [%s].", startingUrl), e, pageUrl != null ? List.of(pageUrl) : List.of());
+        }
+        finally {
+            frontier.close();
+        }
         return this;
     }
 
+    /**
+     * Crawl the view fetching up to the given number of pages at the same time.
+     * <p>
+     * Pages are fetched by a pool of worker threads, while newly discovered relations are scheduled on the frontier
+     * by the calling thread, which hands out at most one pending page per worker. The number of requests in flight towards a single host is
+     * additionally capped by the configured maximum requests per host. Page graphs are merged in the order of their
+     * URLs once the crawl completes so that the resulting graph does not depend on response timings. If rate control is
+     * enabled, the number of pages fetched at the same time adapts to the server between one and the given concurrency.
+     *
+     * @param concurrency The maximum number of pages to fetch at the same time.
+     * @return This crawler.
+     */
+    public Crawler run(int concurrency) {
+        if (concurrency <= 1) {
+            return run();
+        }
+        var executor = Executors.newFixedThreadPool(concurrency);
+        var completionService = new ExecutorCompletionService<CrawledPage>(executor);
+        var hostPermits = new ConcurrentHashMap<String, Semaphore>();
+        restore();
+        var pages = new TreeMap<String, CrawledPage>();
+        var inFlightUrls = new LinkedHashSet<String>();
+        rateControl = rateControlTarget != null ? new ConcurrencyController(concurrency, rateControlTarget, rateControlWindow) : null;
+        try {
+            while (!frontier.isEmpty() || !inFlightUrls.isEmpty()) {
+                var limit = rateControl != null ? rateControl.limit() : concurrency;
+                var pause = rateControl != null ? rateControl.pauseMillis() : 0;
+                if (pause > 0 && inFlightUrls.isEmpty()) {
+                    // The server asked to retry later.
+                    Thread.sleep(pause);
+                    continue;
+                }
+                while (pause == 0 && inFlightUrls.size() < limit && !frontier.isEmpty()) {
+                    String pageUrl = frontier.poll();
+                    completionService.submit(() -> processPageWithHostLimit(pageUrl, hostPermits));
+                    inFlightUrls.add(pageUrl);
+                }
+                Future<CrawledPage> completed = pause > 0 ? completionService.poll(pause, TimeUnit.MILLISECONDS) : completionService.take();
+                if (completed == null) {
+                    continue;
+                }
+                CrawledPage page = completed.get();
+                inFlightUrls.remove(page.url());
+                if (dataset != null) {
+                    // Stored right away so that memory use does not grow with the view.
+                    store(page);
+                } else {
+                    pages.put(page.url(), page);
+                }
+                page.relations().forEach(frontier::offer);
+                checkpoint(page, inFlightUrls);
+            }
+            if (checkpoint != null) {
+                // Nothing is left to resume.
+                checkpoint.delete();
+            }
+        } catch (ExecutionException e) {
+            throw failure(String.format("Unable to crawl [%s].", startingUrl), e.getCause(), inFlightUrls);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure("Interrupted while crawling.", e, inFlightUrls);
+        } finally {
+            executor.shutdownNow();
+            frontier.close();
+            if (rateControl != null) {
+                LOG.info("Rate control of the crawl of [{}]: {}", startingUrl, rateControl.getStatistics());
+            }
+        }
+        pages.values().forEach(this::store);
+        return this;
+    }
+
+    /**
+     * @return The crawled graph (the dataset's default graph, or the union of its named graphs for the named-graph
+     * layout, to be accessed within a transaction, if the crawl is stored in a dataset).
+     */
     public Model getGraph() {
-        return this.crawledGraph;
+        if (dataset == null) {
+            return this.crawledGraph;
+        }
+        return layout == CrawlLayout.GRAPHS ? dataset.getUnionModel() : dataset.getDefaultModel();
     }
 
-    public List<String> getVisitedURLs() {
-        return this.visitedURLs;
+    /**
+     * @return The dataset holding the crawled pages (to be accessed within a transaction), null for crawls in the
+     * nested layout that are kept in memory.
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return The number of distinct pages scheduled during the crawl.
+     */
+    public long getScheduledPageCount() {
+        return frontier.scheduledCount();
     }
 
     public Model crawlPage(String url) throws URISyntaxException, IOException, InterruptedException {
-        // Download page and turn into RDF model.
-        HttpResponse<String> page = fetchPage(url);
-        Model retrievedGraph = pageToModel(page, url);
-
-        // Find all tree:relations and add them to the download queue.
-        extractRelations(retrievedGraph).forEach((String relation_url) -> {
-            // Skip visited pages.
-            if (visitedURLs.contains(relation_url))
-                return;
-            urlQueue.add(relation_url);
+        CrawledPage page = processPageWithRetries(url);
+
+        // Add all tree:relations to the frontier (which skips pages that were already scheduled).
+        page.relations().forEach(frontier::offer);
+        return page.graph().add(page.metadata());
+    }
+
+    /**
+     * Process a page while holding a permit of the page's host.
+     */
+    private CrawledPage processPageWithHostLimit(String url, Map<String, Semaphore> hostPermits) throws URISyntaxException, IOException, InterruptedException {
+        var permits = hostPermits.computeIfAbsent(new URI(url).getAuthority(), host -> new Semaphore(maxRequestsPerHost));
+        permits.acquire();
+        try {
+            return processPageWithRetries(url);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Process a page, retrying failed downloads with exponential backoff and (equal) jitter.
+     */
+    private CrawledPage processPageWithRetries(String url) throws URISyntaxException, IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return processPage(url);
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                var delay = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+                // Half of the delay is random so that retries of concurrent requests spread out.
+                var jitteredDelay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+                if (e instanceof UnexpectedStatusException statusException && statusException.retryAfter.isPresent()) {
+                    // Never retry sooner than the server asked.
+                    jitteredDelay = Math.max(jitteredDelay, statusException.retryAfter.get().toMillis());
+                }
+                LOG.warn("Attempt {} to crawl [{}] failed, retrying in {} ms: {}", attempt, url, jitteredDelay, e.getMessage());
+                Thread.sleep(jitteredDelay);
+            }
+        }
+    }
+
+    /**
+     * Restore the frontier and the pages crawled so far from the checkpoint (if any).
+     */
+    private void restore() {
+        if (layout == CrawlLayout.GRAPHS && dataset == null) {
+            // Named graphs need a dataset (kept in memory unless a disk-backed one was provided).
+            dataset = DatasetFactory.createTxnMem();
+        }
+        var restored = checkpoint != null ? checkpoint.restore(frontier) : DatasetFactory.createGeneral();
+        write(() -> {
+            if (dataset != null) {
+                // The dataset may hold pages crawled after the checkpoint, so its content is replaced.
+                dataset.asDatasetGraph().clear();
+            }
+            restored.listNames().forEachRemaining(name -> {
+                if (name.equals(CrawlLayout.METADATA_GRAPH)) {
+                    metadataGraph().add(restored.getNamedModel(name));
+                } else {
+                    pageGraph(name).add(restored.getNamedModel(name));
+                }
+            });
         });
+    }
 
-        // Create a new bNode for each entity (named subject).
-        Map<String, Resource> subjectMap = getSubjectMap(retrievedGraph);
+    /**
+     * Add a page and its metadata to the crawled pages.
+     */
+    private void store(CrawledPage page) {
+        write(() -> {
+            pageGraph(page.url()).add(page.graph());
+            metadataGraph().add(page.metadata());
+        });
+    }
 
-        // Anonymize these entities.
-        Model processedGraph = anonymizeSubjects(retrievedGraph, subjectMap);
-        // Add original subject as property.
-        trackOriginalSubject(subjectMap, processedGraph);
+    /**
+     * Update the crawled pages (within a write transaction if they are stored in a dataset).
+     */
+    private void write(Runnable update) {
+        if (dataset != null) {
+            Txn.executeWrite(dataset, update);
+        } else {
+            update.run();
+        }
+    }
 
-        // Make all entities of downloaded page children (nested bNodes) of page entity.
-        Resource pageId = createPageEntity(url, subjectMap, processedGraph);
+    /**
+     * Get the graph to add a page's triples to.
+     */
+    private Model pageGraph(String url) {
+        if (dataset == null) {
+            return crawledGraph;
+        }
+        return layout == CrawlLayout.GRAPHS ? dataset.getNamedModel(url) : dataset.getDefaultModel();
+    }
+
+    /**
+     * Get the graph to add page metadata to.
+     */
+    private Model metadataGraph() {
+        if (dataset == null) {
+            return crawledGraph;
+        }
+        return layout == CrawlLayout.GRAPHS ? dataset.getNamedModel(CrawlLayout.METADATA_GRAPH) : dataset.getDefaultModel();
+    }
+
+    /**
+     * Record a crawled page in the checkpoint, saving the checkpoint when due.
+     */
+    private void checkpoint(CrawledPage page, Collection<String> inFlight) {
+        if (checkpoint != null) {
+            checkpoint.addPage(page.url(), page.graph(), page.metadata());
+            if (checkpoint.isDue()) {
+                checkpoint.save(frontier, inFlight);
+            }
+        }
+    }
+
+    /**
+     * Checkpoint a failed crawl (so that it can be resumed) and create the exception to report the failure.
+     */
+    private CrawlException failure(String message, Throwable cause, Collection<String> inFlight) {
+        if (checkpoint != null) {
+            try {
+                checkpoint.save(frontier, inFlight);
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        return new CrawlException(message, getCrawlId(), cause);
+    }
+
+    private CrawledPage processPage(String url) throws URISyntaxException, IOException, InterruptedException {
+        // Download page and stream it into the page graph.
+        long start = System.nanoTime();
+        HttpResponse<InputStream> page = fetchPage(url);
+        var retryAfter = ConcurrencyController.retryAfter(page.headers());
+        if (rateControl != null) {
+            rateControl.onResponse(Duration.ofNanos(System.nanoTime() - start), page.statusCode(), retryAfter);
+        }
+        if (page.statusCode() == 429 || page.statusCode() >= 500) {
+            page.body().close();
+            throw new UnexpectedStatusException(String.format("Unexpected response status [%s] for page [%s].", page.statusCode(), url), retryAfter);
+        }
+        Model processedGraph = ModelFactory.createDefaultModel();
+        Model metadata = ModelFactory.createDefaultModel();
+        Resource pageId = metadata.createResource(url);
+        // Capture the tree:relations and (for the nested layout) anonymize entities (named subjects), nesting them
+        // under the page entity.
+        PageGraphSink sink = layout == CrawlLayout.GRAPHS
+                ? new PageGraphSink(processedGraph.getGraph())
+                : new PageGraphSink(processedGraph.getGraph(), pageId.asNode());
+        try (InputStream body = page.body()) {
+            RDFParser.source(body)
+                    .base(url)
+                    .lang(langOf(page))
+                    .parse(sink);
+        }
+        metadata.add(pageId, RDF.type, CRAWL.CrawledPage);
         // Add header info to the page entity.
-        addHeaders(processedGraph, page, pageId);
-        return processedGraph;
+        addHeaders(metadata, page, pageId);
+        return new CrawledPage(url, processedGraph, metadata, sink.getRelations());
     }
 
-    private void addHeaders(Model processedGraph, HttpResponse<String> page, Resource pageId) {
+    private void addHeaders(Model processedGraph, HttpResponse<?> page, Resource pageId) {
         HttpHeaders headers = page.headers();
         headers.map().forEach((String headerName, List<String> headerValueList) -> {
             Resource headerNode = processedGraph.createResource();
@@ -117,109 +512,45 @@ public class Crawler {
         });
     }
 
-    private Model pageToModel(HttpResponse<String> page, String url) {
-        return ModelFactory
-                .createDefaultModel()
-                // @todo Use content type header of http response?
-                .read(IOUtils.toInputStream(page.body(), "UTF-8"), url, "TURTLE");
+    /**
+     * Determine the RDF syntax of a page from its Content-Type (defaulting to Turtle).
+     */
+    static Lang langOf(HttpResponse<?> page) {
+        return page.headers().firstValue("Content-Type")
+                .map(contentType -> RDFLanguages.contentTypeToLang(contentType.split(";", 2)[0].trim()))
+                .orElse(Lang.TURTLE);
     }
 
-    private static Resource createPageEntity(String url, Map<String, Resource> subjectMap, Model processedGraph) {
-        Resource pageNode = processedGraph.createResource(url);
-        subjectMap.forEach((String subject, Resource bNode)-> {
-            Statement hasEntity = processedGraph.createStatement(
-                    pageNode,
-                    CRAWL.hasContents,
-                    bNode
-                    );
-            processedGraph.add(hasEntity);
-        });
-        Statement hasEntity = processedGraph.createStatement(
-                pageNode,
-                RDF.type,
-                CRAWL.CrawledPage
-        );
-        processedGraph.add(hasEntity);
-        return pageNode;
-    }
-
-    private static void trackOriginalSubject(Map<String, Resource> subjectMap, Model processedGraph) {
-        subjectMap.forEach((String subject, Resource bnode) -> {
-            processedGraph.add(
-                    processedGraph.createStatement(
-                            bnode,
-                            CRAWL.hasSubject,
-                            processedGraph.createResource(subject)
-                    ));
-        });
+    private HttpResponse<InputStream> fetchPage(String url) throws URISyntaxException, IOException, InterruptedException {
+        HttpRequest request = httpClient.newRequest(new URI(url))
+                .header("Accept", accept)
+                .timeout(Duration.of(10, SECONDS))
+                .GET()
+                .build();
+        return cache != null ? cache.send(request) : httpClient.send(request, true);
     }
 
-    private static Model anonymizeSubjects(Model retrievedGraph, Map<String, Resource> subjectMap) {
-        Model processedGraph = ModelFactory.createDefaultModel();
-        retrievedGraph.listStatements().forEach((Statement statement) -> {
-            Resource subject;
-            if (subjectMap.containsKey(statement.getSubject().getURI()))
-                subject = subjectMap.get(statement.getSubject().getURI());
-            else
-                subject = statement.getSubject();
-            Statement st = processedGraph.createStatement(
-                    subject,
-                    statement.getPredicate(),
-                    statement.getObject()
-            );
-            processedGraph.add(st);
-        });
-        return processedGraph;
-    }
+    /**
+     * Record to capture a processed page.
+     *
+     * @param url The page's URL.
+     * @param graph The processed page graph.
+     * @param metadata The page's metadata (its type and response headers).
+     * @param relations The URLs of the pages this page relates to.
+     */
+    private record CrawledPage(String url, Model graph, Model metadata, List<String> relations) {}
 
     /**
-     * Build a subject - bnode mapping.
+     * Exception for (retryable) error responses, carrying the delay the server asked to wait before retrying.
      */
-    private static Map<String, Resource> getSubjectMap(Model retrievedGraph) {
-        Map<String, Resource> subjectMap = new HashMap<>();
+    private static class UnexpectedStatusException extends IOException {
 
-        retrievedGraph.listSubjects().forEach((Resource subject) -> {
-            if (subject.isAnon())
-                return;
-            Resource bnode = retrievedGraph.createResource();
-            subjectMap.put(subject.getURI(), bnode);
-        });
-        return subjectMap;
-    }
+        private final Optional<Duration> retryAfter;
 
-    private static HttpResponse<String> fetchPage(String url) throws URISyntaxException, IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(new URI(url))
-                .header("Accept", "text/turtle")
-                .timeout(Duration.of(10, SECONDS))
-                .GET()
-                .build();
-        HttpResponse<String> response = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build()
-                .send(request, HttpResponse.BodyHandlers.ofString());
-        return response;
-    }
-
-    private List<String> extractRelations(Model model) {
-        List<String> relations = new ArrayList<>();
-        String queryString = """
-            PREFIX tree: <https://w3id.org/tree#>
-            SELECT DISTINCT ?relation
-            WHERE {
-                ?node a tree:Node .
-                ?node tree:relation/tree:node ?relation.
-            }
-            """ ;
-        Query query = QueryFactory.create(queryString) ;
-        try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-            ResultSet results = qexec.execSelect() ;
-            while (results.hasNext()) {
-                Resource relation = results.nextSolution().getResource("relation") ;
-                relations.add(relation.getURI());
-            }
+        UnexpectedStatusException(String message, Optional<Duration> retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
         }
-        return relations;
     }
 
 }
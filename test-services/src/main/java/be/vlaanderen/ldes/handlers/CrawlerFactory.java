@@ -0,0 +1,89 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.http.HttpCache;
+import be.vlaanderen.ldes.http.HttpClientService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Create crawlers configured from the application's properties.
+ */
+@Component
+public class CrawlerFactory {
+
+    @Autowired
+    private HttpClientService httpClient;
+    @Autowired
+    private HttpCache httpCache;
+    @Value("${http.cache.enabled:false}")
+    private boolean cacheEnabled;
+    @Value("${crawler.maxRequestsPerHost:" + Crawler.DEFAULT_MAX_REQUESTS_PER_HOST + "}")
+    private int maxRequestsPerHost;
+    @Value("${crawler.accept:" + Crawler.DEFAULT_ACCEPT + "}")
+    private String accept;
+    @Value("${crawler.frontier.spillThreshold:" + CrawlFrontier.DEFAULT_SPILL_THRESHOLD + "}")
+    private int spillThreshold;
+    @Value("${crawler.checkpoint.directory:#{systemProperties['java.io.tmpdir']}/ldes-crawl-checkpoints}")
+    private String checkpointDirectory;
+    @Value("${crawler.checkpoint.intervalPages:100}")
+    private int checkpointIntervalPages;
+    @Value("${crawler.checkpoint.intervalSeconds:30}")
+    private long checkpointIntervalSeconds;
+    @Value("${crawler.checkpoint.retentionHours:24}")
+    private long checkpointRetentionHours;
+    @Value("${crawler.retry.maxAttempts:4}")
+    private int retryMaxAttempts;
+    @Value("${crawler.retry.initialBackoffMillis:500}")
+    private long retryInitialBackoffMillis;
+    @Value("${crawler.retry.maxBackoffMillis:10000}")
+    private long retryMaxBackoffMillis;
+    @Value("${crawler.rateControl.enabled:true}")
+    private boolean rateControlEnabled;
+    @Value("${crawler.rateControl.latencyTargetMillis:1000}")
+    private long rateControlLatencyTargetMillis;
+    @Value("${crawler.rateControl.window:20}")
+    private int rateControlWindow;
+
+    private volatile Instant lastPurge = Instant.EPOCH;
+
+    /**
+     * Remove expired crawl checkpoints.
+     */
+    @PostConstruct
+    void initialise() {
+        purgeExpiredCheckpoints();
+    }
+
+    /**
+     * Create a crawler for the given view.
+     *
+     * @param viewUri The URI of the view to crawl.
+     * @param crawlId The id of the crawl, used to checkpoint the crawl and to resume it if it was checkpointed before.
+     * @param checkpoint True to checkpoint the crawl (so that it can be resumed if it fails).
+     * @return The crawler.
+     */
+    public Crawler create(String viewUri, String crawlId, boolean checkpoint) {
+        if (Duration.between(lastPurge, Instant.now()).toHours() >= 1) {
+            purgeExpiredCheckpoints();
+        }
+        return new Crawler(viewUri, httpClient, new CrawlFrontier(spillThreshold))
+                .withMaxRequestsPerHost(maxRequestsPerHost)
+                .withAccept(accept)
+                .withCache(cacheEnabled ? httpCache : null)
+                .withRetries(retryMaxAttempts, Duration.ofMillis(retryInitialBackoffMillis), Duration.ofMillis(retryMaxBackoffMillis))
+                .withRateControl(rateControlEnabled ? Duration.ofMillis(rateControlLatencyTargetMillis) : null, rateControlWindow)
+                .withCheckpoint(checkpoint ? new CrawlCheckpoint(Path.of(checkpointDirectory), crawlId, viewUri, checkpointIntervalPages, Duration.ofSeconds(checkpointIntervalSeconds)) : null);
+    }
+
+    private void purgeExpiredCheckpoints() {
+        lastPurge = Instant.now();
+        CrawlCheckpoint.purgeExpired(Path.of(checkpointDirectory), Duration.ofHours(checkpointRetentionHours));
+    }
+
+}
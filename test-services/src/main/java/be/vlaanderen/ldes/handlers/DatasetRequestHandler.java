@@ -1,15 +1,14 @@
 package be.vlaanderen.ldes.handlers;
 
+import be.vlaanderen.ldes.http.HttpClientService;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Handle the requesting of datasets.
@@ -17,6 +16,9 @@ import java.nio.charset.StandardCharsets;
 @Component
 public class DatasetRequestHandler {
 
+    @Autowired
+    private HttpClientService httpClient;
+
     /**
      * Request a dataset. This is actually a generic implementation that could be used for any kind of HTTP GET.
      *
@@ -27,8 +29,7 @@ public class DatasetRequestHandler {
     public Pair<String, Integer> request(String endpoint, String contentType) {
         HttpRequest request;
         try {
-            request = HttpRequest.newBuilder()
-                    .uri(new URI(endpoint))
+            request = httpClient.newRequest(new URI(endpoint))
                     .GET()
                     .header("Accept", contentType)
                     .build();
@@ -36,8 +37,7 @@ public class DatasetRequestHandler {
             throw new IllegalStateException(String.format("Provided URI was invalid [%s].", endpoint), e);
         }
         try {
-            var response = HttpClient.newBuilder()
-                    .build().send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            var response = httpClient.sendForString(request);
             return Pair.of(response.body(), response.statusCode());
         } catch (IOException | InterruptedException e) {
             throw new IllegalStateException(String.format("Error while posting dataset to endpoint [%s]", endpoint), e);
@@ -0,0 +1,91 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Spatial index of member geometries to look up which of them are contained by a relation's geometry.
+ * <p>
+ * The member values are parsed once and bulk-loaded into an STR-tree keyed by their envelopes. A containment lookup
+ * parses the relation's geometry once into a prepared geometry, queries the tree for the members whose envelope
+ * intersects the relation's envelope, skips those whose envelope is not covered by it and only then checks exact
+ * containment. Checking all members of a view against its relations thus takes roughly linear rather than
+ * (relations x members) time.
+ * <p>
+ * Lookups are not thread-safe: they are meant to be made before validating the members (possibly in parallel).
+ */
+final class GeospatialContainment {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(GeospatialContainment.class);
+
+    private final WKTReader reader = new WKTReader();
+    private final STRtree tree = new STRtree();
+
+    private GeospatialContainment() {
+    }
+
+    /**
+     * Index the provided member values.
+     *
+     * @param wktValues The member values (WKT literals, values that cannot be parsed are not indexed).
+     * @return The index.
+     */
+    static GeospatialContainment of(Collection<String> wktValues) {
+        var containment = new GeospatialContainment();
+        for (var value : new HashSet<>(wktValues)) {
+            containment.parse(value).ifPresent(geometry -> containment.tree.insert(geometry.getEnvelopeInternal(), new IndexedGeometry(value, geometry)));
+        }
+        containment.tree.build();
+        return containment;
+    }
+
+    /**
+     * Look up the member values contained by a geometry.
+     *
+     * @param wkt The containing geometry (WKT).
+     * @return The contained member values (empty if the geometry is missing or cannot be parsed).
+     */
+    Set<String> containedBy(String wkt) {
+        var contained = new HashSet<String>();
+        if (wkt == null) {
+            return contained;
+        }
+        parse(wkt).ifPresent(geometry -> {
+            var prepared = PreparedGeometryFactory.prepare(geometry);
+            var envelope = geometry.getEnvelopeInternal();
+            for (var item : tree.query(envelope)) {
+                var candidate = (IndexedGeometry) item;
+                if (envelope.covers(candidate.geometry().getEnvelopeInternal()) && prepared.contains(candidate.geometry())) {
+                    contained.add(candidate.value());
+                }
+            }
+        });
+        return contained;
+    }
+
+    private Optional<Geometry> parse(String wkt) {
+        try {
+            return Optional.of(reader.read(wkt));
+        } catch (ParseException e) {
+            LOG.warn("Unable to parse WKT [{}]: {}", wkt, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A member value with its parsed geometry.
+     *
+     * @param value The member value.
+     * @param geometry The geometry.
+     */
+    private record IndexedGeometry(String value, Geometry geometry) {}
+
+}
@@ -0,0 +1,107 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.CRAWL;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.*;
+
+/**
+ * Parser sink that turns the triples of a crawled page into the crawler's page representation in a single pass.
+ * <p>
+ * For the nested layout ({@link CrawlLayout#NESTED}) each named subject is replaced by a blank node that records the
+ * original subject (rdf:subject) and is linked to the page through crawl:has_contents, while for the named-graph
+ * layout ({@link CrawlLayout#GRAPHS}) the triples are kept as they are. At the same time the TREE relations of the page (tree:Node, tree:relation and
+ * tree:node) are captured so that the pages to follow are known once parsing completes, without looking them up on
+ * the parsed graph.
+ */
+public class PageGraphSink extends StreamRDFBase {
+
+    private final Graph graph;
+    private final Node pageNode;
+    private final Map<Node, Node> subjectMap = new HashMap<>();
+    private final Set<Node> treeNodes = new LinkedHashSet<>();
+    private final Map<Node, List<Node>> nodeRelations = new HashMap<>();
+    private final Map<Node, List<Node>> relationTargets = new HashMap<>();
+
+    /**
+     * Constructor for the nested layout.
+     *
+     * @param graph The graph to add the page's (processed) triples to.
+     * @param pageNode The node of the crawled page.
+     */
+    public PageGraphSink(Graph graph, Node pageNode) {
+        this.graph = graph;
+        this.pageNode = pageNode;
+    }
+
+    /**
+     * Constructor for the named-graph layout (keeping the original subjects).
+     *
+     * @param graph The graph to add the page's triples to.
+     */
+    public PageGraphSink(Graph graph) {
+        this(graph, null);
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        var subject = triple.getSubject();
+        var predicate = triple.getPredicate();
+        var object = triple.getObject();
+        // Capture the TREE relations (on the original subjects).
+        if (predicate.equals(RDF.Nodes.type) && object.equals(TreeRelations.NODE_TYPE)) {
+            treeNodes.add(subject);
+        } else if (predicate.equals(TreeRelations.RELATION)) {
+            nodeRelations.computeIfAbsent(subject, key -> new ArrayList<>()).add(object);
+        } else if (predicate.equals(TreeRelations.NODE)) {
+            relationTargets.computeIfAbsent(subject, key -> new ArrayList<>()).add(object);
+        }
+        // Anonymize named subjects (nested layout).
+        if (pageNode != null && subject.isURI()) {
+            subject = subjectMap.computeIfAbsent(subject, this::anonymize);
+        }
+        graph.add(Triple.create(subject, predicate, object));
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        // Pages are flattened into a single graph.
+        triple(quad.asTriple());
+    }
+
+    /**
+     * Get the URLs of the pages that the parsed page relates to (tree:relation/tree:node of its tree:Node subjects).
+     *
+     * @return The distinct related page URLs in the order they were encountered.
+     */
+    public List<String> getRelations() {
+        var relations = new LinkedHashSet<String>();
+        for (var treeNode : treeNodes) {
+            for (var relation : nodeRelations.getOrDefault(treeNode, List.of())) {
+                for (var target : relationTargets.getOrDefault(relation, List.of())) {
+                    if (target.isURI()) {
+                        relations.add(target.getURI());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(relations);
+    }
+
+    /**
+     * Create the blank node standing in for a named subject and link it to the page.
+     */
+    private Node anonymize(Node subject) {
+        var bnode = NodeFactory.createBlankNode();
+        graph.add(Triple.create(pageNode, CRAWL.hasContents.asNode(), bnode));
+        graph.add(Triple.create(bnode, CRAWL.hasSubject.asNode(), subject));
+        return bnode;
+    }
+
+}
@@ -1,18 +1,17 @@
 package be.vlaanderen.ldes.handlers;
 
+import be.vlaanderen.ldes.http.HttpClientService;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipInputStream;
@@ -26,6 +25,9 @@ public class PostDatasetHandler {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(PostDatasetHandler.class);
 
+    @Autowired
+    private HttpClientService httpClient;
+
     /**
      * Post several dataset files to the LDES server defined in the provided ZIP archive.
      *
@@ -63,8 +65,7 @@ public class PostDatasetHandler {
     public PostResult post(byte[] dataset, String contentType, String endpoint) {
         HttpRequest request;
         try {
-            request = HttpRequest.newBuilder()
-                    .uri(new URI(endpoint))
+            request = httpClient.newRequest(new URI(endpoint))
                     .POST(HttpRequest.BodyPublishers.ofByteArray(dataset))
                     .header("Content-Type", contentType)
                     .build();
@@ -72,8 +73,7 @@ public class PostDatasetHandler {
             throw new IllegalStateException(String.format("Provided URI was invalid [%s].", endpoint), e);
         }
         try {
-            var response = HttpClient.newBuilder()
-                    .build().send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            var response = httpClient.sendForString(request);
             return new PostResult(response.statusCode(), response.body());
         } catch (IOException | InterruptedException e) {
             throw new IllegalStateException(String.format("Error while posting dataset to endpoint [%s]", endpoint), e);
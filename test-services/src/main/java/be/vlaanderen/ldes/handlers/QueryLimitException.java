@@ -0,0 +1,17 @@
+package be.vlaanderen.ldes.handlers;
+
+/**
+ * Exception raised when a SPARQL query exceeds its execution timeout or maximum number of rows.
+ */
+public class QueryLimitException extends IllegalStateException {
+
+    /**
+     * Constructor.
+     *
+     * @param message The error message.
+     */
+    public QueryLimitException(String message) {
+        super(message);
+    }
+
+}
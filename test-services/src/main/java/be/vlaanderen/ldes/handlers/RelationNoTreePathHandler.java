@@ -1,17 +1,14 @@
 package be.vlaanderen.ldes.handlers;
 
 import be.vlaanderen.ldes.gitb.TestBedLogger;
+import be.vlaanderen.ldes.storage.ContentModelProvider;
+import be.vlaanderen.ldes.storage.ContentModelProvider.ContentModel;
 import com.gitb.core.LogLevel;
-import org.apache.jena.graph.Factory;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.riot.RDFLanguages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
-import java.io.StringReader;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -28,6 +25,9 @@ public class RelationNoTreePathHandler {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(RelationTimestampValidationHandler.class);
 
+    @Autowired
+    private ContentModelProvider contentModelProvider;
+
     /**
      * Validate the provided (crawled) content.
      *
@@ -37,20 +37,31 @@ public class RelationNoTreePathHandler {
      * @return The list of error messages to report.
      */
     public List<String> validate(String content, String contentType, TestBedLogger logger) {
-        var errorMessages = new ArrayList<String>();
-        var inputModel = ModelFactory.createModelForGraph(Factory.createDefaultGraph());
-        try (var reader = new StringReader(content)) {
-            inputModel.read(reader, null, RDFLanguages.contentTypeToLang(contentType).getName());
+        try (var input = contentModelProvider.open(content, contentType)) {
+            return validate(input, logger);
         }
+    }
+
+    /**
+     * Validate the provided (crawled) content.
+     *
+     * @param input The content to validate.
+     * @param logger The logger to use to post log messages to the Test Bed.
+     * @return The list of error messages to report.
+     */
+    private List<String> validate(ContentModel input, TestBedLogger logger) {
+        var errorMessages = new ArrayList<String>();
+        // Index the content once for all relations and members.
+        var index = input.index();
         // Look up the time-based relations to check.
-        var relationsToCheck = getRelationsToCheck(inputModel);
+        var relationsToCheck = getRelationsToCheck(index);
         for (var relation: relationsToCheck) {
             LOG.debug("Validating relation {}", relation);
             // Lookup the members of page referred to by a relation.
-            var members = getPageMembers(inputModel, relation.relatedPage());
+            var members = getPageMembers(index, relation.relatedPage());
             for (var member: members) {
                 // Look up the value of the member property referred to by the relation.
-                var memberValue = getMemberValue(inputModel, member, relation.relationPath());
+                var memberValue = getMemberValue(index, member, relation.relationPath());
                 if (memberValue.isPresent()) {
                     var memberDate = toDate(memberValue.get());
                     var isValid = switch (relation.relationType()) {
@@ -61,9 +72,11 @@ public class RelationNoTreePathHandler {
                         case LessThanOrEqualToRelation -> relation.relationValue().isBefore(memberDate) || relation.relationValue().isEqual(memberDate);
                     };
                     if (isValid) {
-                        String message = String.format("Member [%s] value [%s] passed check [%s] for relation value [%s].", member, memberDate, relation.relationType(), relation.relationValue());
-                        logger.log(String.format(message), LogLevel.DEBUG);
-                        LOG.debug(message);
+                        if (logger.isEnabled(LogLevel.DEBUG) || LOG.isDebugEnabled()) {
+                            String message = String.format("Member [%s] value [%s] passed check [%s] for relation value [%s].", member, memberDate, relation.relationType(), relation.relationValue());
+                            logger.log(message, LogLevel.DEBUG);
+                            LOG.debug(message);
+                        }
                     } else {
                         errorMessages.add(String.format("Page [%s] has a [%s] relation with page [%s], but member [%s] defines an invalid value [%s] for property [%s] considering the relation's value of [%s].", relation.page(), relation.relationType(), relation.relatedPage(), member, memberDate, relation.relationPath(), relation.relationValue()));
                     }
@@ -102,96 +115,36 @@ public class RelationNoTreePathHandler {
     /**
      * Detect the time-based relations to validate.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @return The relations.
      */
-    private List<RelationData> getRelationsToCheck(Model inputModel) {
-        var results = new ArrayList<RelationData>();
-        String query = """
-            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-            PREFIX tree: <https://w3id.org/tree#>
-            select DISTINCT ?Subject ?RelationType ?RelatedPage ?PropertyPath ?RelationValue  where {
-                    ?Node rdf:type tree:Node ;
-                        rdf:subject ?Subject ;
-                        tree:relation ?Relation .
-                    ?Relation rdf:type ?RelationType ;
-                        tree:node ?RelatedPage ;
-                        tree:value ?RelationValue ;
-                        tree:path ?PropertyPath .
-            }
-        """;
-        try (var queryExecution = QueryExecutionFactory.create(query, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            while (resultSet.hasNext()) {
-                var entry = resultSet.next();
-                results.add(new RelationData(
-                        entry.get("Subject").toString(),
-                        RelationType.fromProperty(entry.get("RelationType").toString()),
-                        toDate(entry.get("RelationValue").toString()),
-                        entry.get("PropertyPath").toString(),
-                        entry.get("RelatedPage").toString()
-                ));
-            }
-            resultSet.close();
-        }
-        return results;
+    private List<RelationData> getRelationsToCheck(CrawlIndex index) {
+        return index.relations().stream()
+                .map(relation -> new RelationData(relation.page(), RelationType.fromProperty(relation.relationType()), toDate(relation.relationValue()), relation.relationPath(), relation.relatedPage()))
+                .toList();
     }
 
     /**
      * Get the members of a given page.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @param page The page's subject.
      * @return The list of member subjects.
      */
-    private List<String> getPageMembers(Model inputModel, String page) {
-        var results = new ArrayList<String>();
-        String memberQuery = String.format("""
-                PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-                PREFIX tree: <https://w3id.org/tree#>
-                PREFIX crawler: <http://example.org/>
-                PREFIX ldes: <https://w3id.org/ldes#>
-                select DISTINCT ?PageMember where {
-                    ?Page rdf:type crawler:CrawledPage ;
-                        crawler:hasPageSource ?PageSource ;
-                        crawler:has_contents ?PageContent .
-                    ?PageContent rdf:type ldes:EventStream ;
-                         tree:member ?PageMember .
-                    FILTER(?PageSource = "%s")
-                }
-            """, page);
-        try (var queryExecution = QueryExecutionFactory.create(memberQuery, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            resultSet.forEachRemaining(entry -> results.add(entry.get("PageMember").toString()));
-            resultSet.close();
-        }
-        return results;
+    private List<String> getPageMembers(CrawlIndex index, String page) {
+        return index.members(page);
     }
 
     /**
      * Get the property value for a given member to compare against the relation's value.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @param memberSubject The member's subject.
      * @param property The property name to lookup.
      * @return The property value (if found).
      */
-    private Optional<String> getMemberValue(Model inputModel, String memberSubject, String property) {
-        var memberValueQuery = String.format("""
-            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-            select ?MemberValue where {
-                ?Member rdf:subject ?MemberSubject ;
-                    <%s> ?MemberValue .
-                FILTER(?MemberSubject = <%s>)
-            }
-        """, property, memberSubject);
-        try (var queryExecution = QueryExecutionFactory.create(memberValueQuery, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            if (resultSet.hasNext()) {
-                return Optional.of(resultSet.next().get("MemberValue").toString());
-            }
-        }
-        return Optional.empty();
+    private Optional<String> getMemberValue(CrawlIndex index, String memberSubject, String property) {
+        return index.values(memberSubject, property).stream().findFirst();
     }
 
     /**
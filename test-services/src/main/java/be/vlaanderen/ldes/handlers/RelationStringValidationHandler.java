@@ -1,20 +1,20 @@
 package be.vlaanderen.ldes.handlers;
 
 import be.vlaanderen.ldes.gitb.TestBedLogger;
+import be.vlaanderen.ldes.handlers.StringRelationMatcher.Matches;
+import be.vlaanderen.ldes.storage.ContentModelProvider;
+import be.vlaanderen.ldes.storage.ContentModelProvider.ContentModel;
 import com.gitb.core.LogLevel;
-import org.apache.jena.graph.Factory;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QuerySolution;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.riot.RDFLanguages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static be.vlaanderen.ldes.Utils.convertListToString;
@@ -28,6 +28,11 @@ public class RelationStringValidationHandler {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(RelationStringValidationHandler.class);
 
+    @Autowired
+    private ContentModelProvider contentModelProvider;
+    @Autowired
+    private ValidationExecutor validationExecutor;
+
     /**
      * Validate the provided (crawled) content.
      *
@@ -37,151 +42,177 @@ public class RelationStringValidationHandler {
      * @return The list of error messages to report.
      */
     public List<String> validate(String content, String contentType, TestBedLogger logger) {
-        var errorMessages = new ArrayList<String>();
-        var inputModel = ModelFactory.createModelForGraph(Factory.createDefaultGraph());
-        var membersExist = false;
-        try (var reader = new StringReader(content)) {
-            inputModel.read(reader, null, RDFLanguages.contentTypeToLang(contentType).getName());
+        return validate(content, contentType, logger, false);
+    }
+
+    /**
+     * Validate the provided (crawled) content, optionally checking the members of the relations in parallel.
+     *
+     * @param content The content to validate (to be progressively queried multiple times).
+     * @param contentType The content's type.
+     * @param logger The logger to use to post log messages to the Test Bed (must be thread-safe if parallel).
+     * @param parallel True to carry out the checks in parallel (see {@link ValidationExecutor}).
+     * @return The list of error messages to report (in the same order in both modes).
+     */
+    public List<String> validate(String content, String contentType, TestBedLogger logger, boolean parallel) {
+        try (var input = contentModelProvider.open(content, contentType)) {
+            return validate(input, logger, parallel);
         }
-        // Look up the time-based relations to check.
-        var relationsToCheck = getRelationsToCheck(inputModel);
-        for (var relation: relationsToCheck) {
+    }
+
+    /**
+     * Validate the provided (crawled) content.
+     *
+     * @param input The content to validate.
+     * @param logger The logger to use to post log messages to the Test Bed.
+     * @param parallel True to carry out the checks in parallel.
+     * @return The list of error messages to report.
+     */
+    private List<String> validate(ContentModel input, TestBedLogger logger, boolean parallel) {
+        var errorMessages = new ArrayList<String>();
+        // Index the content once for all relations and members.
+        var index = input.index();
+        // Look up the string relations to check and the members of the pages they refer to.
+        var relations = getRelationsToCheck(index);
+        var checks = new ArrayList<MemberCheck>();
+        for (var relation: relations) {
             LOG.debug("Validating relation {}", relation);
-            // Lookup the members of page referred to by a relation.
-            var members = getPageMembers(inputModel, relation.relatedPage());
-            var validValues = new ArrayList<String>();
-            for (var member: members) {
-                membersExist = true;
-                // Look up the value of the member property referred to by the relation.
-                var memberValues = getMemberValue(inputModel, member, relation.relationPath());
-                if (memberValues.isPresent()) {
-                    Boolean isValid = false;                    
-                    switch (relation.relationType()) {
-                        case PrefixRelation -> {for (String memberValue: memberValues.get()) {if(memberValue.startsWith(relation.relationValue())){isValid = true; validValues.add(memberValue);}}}
-                        case SubstringRelation ->{for (String memberValue: memberValues.get()) {if(memberValue.contains(relation.relationValue())){isValid = true;validValues.add(memberValue);}}} 
-                        case SuffixRelation -> {for (String memberValue: memberValues.get()) {if(memberValue.endsWith(relation.relationValue())){isValid = true;validValues.add(memberValue);}}}  
-                        case EqualToRelation -> {for (String memberValue: memberValues.get()) {if(relation.relationValue().compareTo(memberValue) == 0){isValid = true;validValues.add(memberValue);}}}   
-                        case GreaterThanRelation -> {for (String memberValue: memberValues.get()) {if(relation.relationValue().compareTo(memberValue) > 0){isValid = true;validValues.add(memberValue);}}} 
-                        case GreaterThanOrEqualToRelation ->{for (String memberValue: memberValues.get()) {if(relation.relationValue().compareTo(memberValue) >= 0){isValid = true;validValues.add(memberValue);}}}
-                        case LessThanRelation ->{for (String memberValue: memberValues.get()) {if(relation.relationValue().compareTo(memberValue) < 0){isValid = true;validValues.add(memberValue);}}} 
-                        case LessThanOrEqualToRelation ->{for (String memberValue: memberValues.get()) {if(relation.relationValue().compareTo(memberValue) <= 0){isValid = true;validValues.add(memberValue);}}} 
-                    };
-                    if (isValid) {
-                        String message = String.format("Member [%s] passed check [%s] for relation value [%s] with valid value(s):\n%s.", member, relation.relationType(), relation.relationValue(), convertListToString(validValues));
-                        logger.log(String.format(message), LogLevel.DEBUG);
-                        LOG.debug(message);
-                    } else {
-                        errorMessages.add(String.format("Page [%s] has a [%s] relation with page [%s], but member [%s] defines invalid value(s):\n [%s] for property [%s] considering the relation's value of [%s].", relation.page(), relation.relationType(), relation.relatedPage(), member, convertListToString(memberValues.get()), relation.relationPath(), relation.relationValue()));
-                    }
-                } else {
-                    errorMessages.add(String.format("Page [%s] relates to page [%s], but member [%s] does not define the expected relation property [%s].", relation.page(), relation.relatedPage(), member, relation.relationPath()));
-                }
+            for (var member: getPageMembers(index, relation.relatedPage())) {
+                checks.add(new MemberCheck(relation, member));
             }
         }
-        if(!membersExist){
+        var matches = getMatches(index, relations);
+        validationExecutor.run(checks, check -> validate(index, matches, check, logger), parallel)
+                .forEach(errorMessage -> errorMessage.ifPresent(errorMessages::add));
+        if(checks.isEmpty()){
             errorMessages.add(String.format("No members found for the provided page(s) with Substring Semantic Relations."));
-        }   
+        }
         return errorMessages;
     }
 
     /**
-     * Detect the String relations to validate.
+     * Check a member of the page referred to by a relation.
      *
-     * @param inputModel The input model.
-     * @return The relations.
+     * @param index The index of the input content.
+     * @param matches The prefix, substring and suffix relation values matched by the member values (see {@link #getMatches}).
+     * @param check The relation and member to check.
+     * @param logger The logger to use to post log messages to the Test Bed.
+     * @return The error message to report (if any).
      */
-    private List<RelationData> getRelationsToCheck(Model inputModel) {
-        var results = new ArrayList<RelationData>();
-        String query = """
-            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-            PREFIX tree: <https://w3id.org/tree#>
-            select DISTINCT ?Subject ?RelationType ?RelatedPage ?PropertyPath ?RelationValue  where {
-                    ?Node rdf:type tree:Node ;
-                        rdf:subject ?Subject ;
-                        tree:relation ?Relation .
-                    ?Relation rdf:type ?RelationType ;
-                        tree:node ?RelatedPage ;
-                        tree:value ?RelationValue ;
-                        tree:path ?PropertyPath .
+    private Optional<String> validate(CrawlIndex index, Map<String, Map<String, Matches>> matches, MemberCheck check, TestBedLogger logger) {
+        var relation = check.relation();
+        var member = check.member();
+        // Look up the value of the member property referred to by the relation.
+        var memberValues = getMemberValue(index, member, relation.relationPath());
+        var validValues = new ArrayList<String>();
+        if (memberValues.isPresent()) {
+            var valueMatches = matches.getOrDefault(relation.relatedPage() + " " + relation.relationPath(), Map.of());
+            for (String memberValue: memberValues.get()) {
+                if (satisfies(relation, memberValue, valueMatches)) {
+                    validValues.add(memberValue);
+                }
             }
-        """;
-        try (var queryExecution = QueryExecutionFactory.create(query, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            while (resultSet.hasNext()) {
-                var entry = resultSet.next();
-                results.add(new RelationData(
-                        entry.get("Subject").toString(),
-                        RelationType.fromProperty(entry.get("RelationType").toString()),
-                        entry.get("RelationValue").toString(),
-                        entry.get("PropertyPath").toString(),
-                        entry.get("RelatedPage").toString()
-                ));
+            if (!validValues.isEmpty()) {
+                if (logger.isEnabled(LogLevel.DEBUG) || LOG.isDebugEnabled()) {
+                    String message = String.format("Member [%s] passed check [%s] for relation value [%s] with valid value(s):\n%s.", member, relation.relationType(), relation.relationValue(), convertListToString(validValues));
+                    logger.log(message, LogLevel.DEBUG);
+                    LOG.debug(message);
+                }
+                return Optional.empty();
             }
-            resultSet.close();
+            return Optional.of(String.format("Page [%s] has a [%s] relation with page [%s], but member [%s] defines invalid value(s):\n [%s] for property [%s] considering the relation's value of [%s].", relation.page(), relation.relationType(), relation.relatedPage(), member, convertListToString(memberValues.get()), relation.relationPath(), relation.relationValue()));
+        }
+        return Optional.of(String.format("Page [%s] relates to page [%s], but member [%s] does not define the expected relation property [%s].", relation.page(), relation.relatedPage(), member, relation.relationPath()));
+    }
+
+    /**
+     * Check whether a member value satisfies a relation.
+     *
+     * @param relation The relation.
+     * @param memberValue The member value.
+     * @param valueMatches The prefix, substring and suffix relation values matched by the related page's member values.
+     * @return True if the value is valid.
+     */
+    static boolean satisfies(RelationData relation, String memberValue, Map<String, Matches> valueMatches) {
+        return switch (relation.relationType()) {
+            case PrefixRelation -> valueMatches.get(memberValue).startsWith(relation.relationValue());
+            case SubstringRelation -> valueMatches.get(memberValue).contains(relation.relationValue());
+            case SuffixRelation -> valueMatches.get(memberValue).endsWith(relation.relationValue());
+            case EqualToRelation -> relation.relationValue().compareTo(memberValue) == 0;
+            case GreaterThanRelation -> relation.relationValue().compareTo(memberValue) > 0;
+            case GreaterThanOrEqualToRelation -> relation.relationValue().compareTo(memberValue) >= 0;
+            case LessThanRelation -> relation.relationValue().compareTo(memberValue) < 0;
+            case LessThanOrEqualToRelation -> relation.relationValue().compareTo(memberValue) <= 0;
+        };
+    }
+
+    /**
+     * Match the member values of each related page (and relation path) against all prefix, substring and suffix
+     * relations to that page at once (see {@link StringRelationMatcher}).
+     *
+     * @param index The index of the input content.
+     * @param relations The relations.
+     * @return The matches per member value, per related page and path (separated by a space).
+     */
+    private Map<String, Map<String, Matches>> getMatches(CrawlIndex index, List<RelationData> relations) {
+        var groups = new LinkedHashMap<String, List<RelationData>>();
+        for (var relation: relations) {
+            groups.computeIfAbsent(relation.relatedPage() + " " + relation.relationPath(), key -> new ArrayList<>()).add(relation);
         }
-        return results;
+        var matches = new HashMap<String, Map<String, Matches>>();
+        groups.forEach((key, group) -> {
+            var matcher = new StringRelationMatcher(valuesOf(group, RelationType.PrefixRelation), valuesOf(group, RelationType.SubstringRelation), valuesOf(group, RelationType.SuffixRelation));
+            var valueMatches = new HashMap<String, Matches>();
+            var relatedPage = group.get(0).relatedPage();
+            var relationPath = group.get(0).relationPath();
+            for (var member: getPageMembers(index, relatedPage)) {
+                for (var value: index.values(member, relationPath)) {
+                    valueMatches.computeIfAbsent(value, matcher::match);
+                }
+            }
+            matches.put(key, valueMatches);
+        });
+        return matches;
+    }
+
+    private static List<String> valuesOf(List<RelationData> relations, RelationType relationType) {
+        return relations.stream().filter(relation -> relation.relationType() == relationType).map(RelationData::relationValue).toList();
+    }
+
+    /**
+     * Detect the String relations to validate.
+     *
+     * @param index The index of the input content.
+     * @return The relations.
+     */
+    private List<RelationData> getRelationsToCheck(CrawlIndex index) {
+        return index.relations().stream()
+                .map(relation -> new RelationData(relation.page(), RelationType.fromProperty(relation.relationType()), relation.relationValue(), relation.relationPath(), relation.relatedPage()))
+                .toList();
     }
 
     /**
      * Get the members of a given page.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @param page The page's subject.
      * @return The list of member subjects.
      */
-    private List<String> getPageMembers(Model inputModel, String page) {
-        var results = new ArrayList<String>();
-        String memberQuery = String.format("""
-                PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-                PREFIX tree: <https://w3id.org/tree#>
-                PREFIX crawler: <http://example.org/>
-                PREFIX ldes: <https://w3id.org/ldes#>
-                select DISTINCT ?PageMember where {
-                    ?Page rdf:type crawler:CrawledPage ;
-                        crawler:has_contents ?PageContent .
-                    ?PageContent rdf:type ldes:EventStream 
-                         tree:member ?PageMember .
-                    FILTER(?PageSource = "%s")
-                }
-            """, page);
-        try (var queryExecution = QueryExecutionFactory.create(memberQuery, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            resultSet.forEachRemaining(entry -> results.add(entry.get("PageMember").toString()));
-            resultSet.close();
-        }
-        return results;
+    private List<String> getPageMembers(CrawlIndex index, String page) {
+        return index.members(page);
     }
 
     /**
      * Get the property value for a given member to compare against the relation's value.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @param memberSubject The member's subject.
      * @param property The property name to lookup.
      * @return The property value (if found).
      */
-    private Optional<List<String>> getMemberValue(Model inputModel, String memberSubject, String property) {
-        var memberValueQuery = String.format("""
-            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-            select ?MemberValue where {
-                ?Member rdf:subject ?MemberSubject ;
-                    <%s> ?MemberValue .
-                FILTER(?MemberSubject = <%s>)
-            }
-        """, property, memberSubject);
-        try (var queryExecution = QueryExecutionFactory.create(memberValueQuery, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            if (resultSet.hasNext()) {
-               List<String> returnSet = new ArrayList<>();
-                while (resultSet.hasNext()) {
-                    // Access individual query solution
-                    QuerySolution solution = resultSet.nextSolution();                    
-                    returnSet.add(solution.get("MemberValue").toString());    
-                }
-                return Optional.of(returnSet);
-             }            
-        }
-        return Optional.empty();
+    private Optional<List<String>> getMemberValue(CrawlIndex index, String memberSubject, String property) {
+        var values = index.values(memberSubject, property);
+        return values.isEmpty() ? Optional.empty() : Optional.of(values);
     }
 
     /**
@@ -195,6 +226,14 @@ public class RelationStringValidationHandler {
      */
     record RelationData(String page, RelationType relationType, String relationValue, String relationPath, String relatedPage) {}
 
+    /**
+     * Record to capture a member to check against a relation.
+     *
+     * @param relation The relation.
+     * @param member The member's subject.
+     */
+    record MemberCheck(RelationData relation, String member) {}
+
     /**
      * The types of relations to consider.
      */
@@ -1,22 +1,16 @@
 package be.vlaanderen.ldes.handlers;
 
 import be.vlaanderen.ldes.gitb.TestBedLogger;
+import be.vlaanderen.ldes.storage.ContentModelProvider;
+import be.vlaanderen.ldes.storage.ContentModelProvider.ContentModel;
 import com.gitb.core.LogLevel;
-import org.apache.jena.graph.Factory;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QuerySolution;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.riot.RDFLanguages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
-import java.io.StringReader;
-import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +25,11 @@ public class RelationTimestampValidationHandler {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(RelationTimestampValidationHandler.class);
 
+    @Autowired
+    private ContentModelProvider contentModelProvider;
+    @Autowired
+    private ValidationExecutor validationExecutor;
+
     /**
      * Validate the provided (crawled) content.
      *
@@ -40,173 +39,138 @@ public class RelationTimestampValidationHandler {
      * @return The list of error messages to report.
      */
     public List<String> validate(String content, String contentType, TestBedLogger logger) {
-        var errorMessages = new ArrayList<String>();
-        var inputModel = ModelFactory.createModelForGraph(Factory.createDefaultGraph());
-        var membersExist = false;
-        try (var reader = new StringReader(content)) {
-            inputModel.read(reader, null, RDFLanguages.contentTypeToLang(contentType).getName());
+        return validate(content, contentType, logger, false);
+    }
+
+    /**
+     * Validate the provided (crawled) content, optionally checking the members of the relations in parallel.
+     *
+     * @param content The content to validate (to be progressively queried multiple times).
+     * @param contentType The content's type.
+     * @param logger The logger to use to post log messages to the Test Bed (must be thread-safe if parallel).
+     * @param parallel True to carry out the checks in parallel (see {@link ValidationExecutor}).
+     * @return The list of error messages to report (in the same order in both modes).
+     */
+    public List<String> validate(String content, String contentType, TestBedLogger logger, boolean parallel) {
+        try (var input = contentModelProvider.open(content, contentType)) {
+            return validate(input, logger, parallel);
         }
-        // Look up the time-based relations to check.
-        var relationsToCheck = getRelationsToCheck(inputModel);
-        for (var relation: relationsToCheck) {
+    }
+
+    /**
+     * Validate the provided (crawled) content.
+     *
+     * @param input The content to validate.
+     * @param logger The logger to use to post log messages to the Test Bed.
+     * @param parallel True to carry out the checks in parallel.
+     * @return The list of error messages to report.
+     */
+    private List<String> validate(ContentModel input, TestBedLogger logger, boolean parallel) {
+        var errorMessages = new ArrayList<String>();
+        // Index the content once for all relations and members.
+        var index = input.index();
+        // Look up the time-based relations to check and the members of the pages they refer to.
+        var columns = new HashMap<String, TimestampColumn>();
+        var checks = new ArrayList<MemberCheck>();
+        for (var relation: getRelationsToCheck(index)) {
             LOG.debug("Validating relation {}", relation);
-            // Lookup the members of page referred to by a relation.
-            var members = getPageMembers(inputModel, relation.relatedPage());
-            for (var member: members) {
-                membersExist = true;
-                // Look up the value of the member property referred to by the relation.
-                var memberValues = getMemberValue(inputModel, member, relation.relationPath());
-                var validValues = new ArrayList<String>();
-                if (memberValues.isPresent()) {
-                    Boolean isValid = false;
-                    switch (relation.relationType()) {                        
-                        case EqualToRelation -> {for (String memberValue: memberValues.get()) {if(relation.relationValue().isEqual(toDate(memberValue))){isValid = true; validValues.add(memberValue);}}}
-                        case GreaterThanRelation -> {for (String memberValue: memberValues.get()) {if(relation.relationValue().isAfter(toDate(memberValue))){isValid = true; validValues.add(memberValue);}}}
-                        case GreaterThanOrEqualToRelation ->{for (String memberValue: memberValues.get()) {if( relation.relationValue().isAfter(toDate(memberValue)) || relation.relationValue().isEqual(toDate(memberValue))){isValid = true; validValues.add(memberValue);}}}
-                        case LessThanRelation ->{for (String memberValue: memberValues.get()) {if(relation.relationValue().isBefore(toDate(memberValue))){isValid = true;validValues.add(memberValue);}}}
-                        case LessThanOrEqualToRelation -> {for (String memberValue: memberValues.get()) {if(relation.relationValue().isBefore(toDate(memberValue)) || relation.relationValue().isEqual(toDate(memberValue))){isValid = true;validValues.add(memberValue);}}}                    };
-                    if (isValid) {
-                        String message = String.format("Member [%s] passed check [%s] for relation value [%s] with valid value(s):\n%s.", member, relation.relationType(), relation.relationValue(), convertListToString(validValues));
-                        logger.log(String.format(message), LogLevel.DEBUG);
-                        LOG.debug(message);
-                    } else {
-                        errorMessages.add(String.format("Page [%s] has a [%s] relation with page [%s], but member [%s] defines invalid value(s):\n [%s] for property [%s] considering the relation's value of [%s].", relation.page(), relation.relationType(), relation.relatedPage(), member, convertListToString(memberValues.get()), relation.relationPath(), relation.relationValue()));
-                    }
-                } else {
-                    errorMessages.add(String.format("Page [%s] relates to page [%s], but member [%s] does not define the expected relation property [%s].", relation.page(), relation.relatedPage(), member, relation.relationPath()));
-                }
+            var members = getPageMembers(index, relation.relatedPage());
+            // Decode the related page's member values once per page and property, and find the matching ones.
+            var column = columns.computeIfAbsent(relation.relatedPage() + " " + relation.relationPath(), key -> TimestampColumn.of(members, member -> index.values(member, relation.relationPath())));
+            var range = getMatchingRange(relation, column);
+            for (int i = 0; i < members.size(); i++) {
+                checks.add(new MemberCheck(range, members.get(i), i));
             }
         }
-        if(!membersExist){
+        validationExecutor.run(checks, check -> validate(check, logger), parallel)
+                .forEach(errorMessage -> errorMessage.ifPresent(errorMessages::add));
+        if(checks.isEmpty()){
             errorMessages.add(String.format("No members found for the provided page(s) with Time Semantic relation(s)."));
         }   
         return errorMessages;
     }
 
     /**
-     * Convert the property value to a date instant.
+     * Check a member of the page referred to by a relation.
      *
-     * @param propertyValue The property value to convert.
-     * @return The date instant.
+     * @param check The relation and member to check.
+     * @param logger The logger to use to post log messages to the Test Bed.
+     * @return The error message to report (if any).
      */
-    private OffsetDateTime toDate(String propertyValue) {
-        OffsetDateTime result = null;
-        if (propertyValue != null) {
-            var parts = StringUtils.split(propertyValue, "^^");
-            if (parts != null && parts.length == 2) {
-                String datePattern = switch (parts[1]) {
-                    case "http://www.w3.org/2001/XMLSchema#time" -> "HH:mm:ss.SSSSSSXXXXX";
-                    case "http://www.w3.org/2001/XMLSchema#date" -> "yyyy-MM-dd";
-                    case "http://www.w3.org/2001/XMLSchema#dateTime" -> "yyyy-MM-dd'T'HH:mm:ss.SSSSSSXXXXX";
-                    case "http://www.w3.org/2001/XMLSchema#dateTimeStamp" -> "yyyy-MM-dd'T'HH:mm:ss.SSSSSSXXXXX";
-                    default -> throw new IllegalStateException(String.format("Unexpected type [%s] for date-based property.", parts[1]));
-                };
-                result = OffsetDateTime.parse(parts[0], DateTimeFormatter.ofPattern(datePattern));
+    private Optional<String> validate(MemberCheck check, TestBedLogger logger) {
+        var range = check.range();
+        var relation = range.relation();
+        var member = check.member();
+        // Look up the value of the member property referred to by the relation.
+        var memberValues = getMemberValue(range.column(), check.position());
+        if (memberValues.isPresent()) {
+            var validValues = range.column().valuesWithin(check.position(), range.from(), range.to());
+            if (!validValues.isEmpty()) {
+                if (logger.isEnabled(LogLevel.DEBUG) || LOG.isDebugEnabled()) {
+                    String message = String.format("Member [%s] passed check [%s] for relation value [%s] with valid value(s):\n%s.", member, relation.relationType(), relation.relationValue(), convertListToString(validValues));
+                    logger.log(message, LogLevel.DEBUG);
+                    LOG.debug(message);
+                }
+                return Optional.empty();
             }
+            return Optional.of(String.format("Page [%s] has a [%s] relation with page [%s], but member [%s] defines invalid value(s):\n [%s] for property [%s] considering the relation's value of [%s].", relation.page(), relation.relationType(), relation.relatedPage(), member, convertListToString(memberValues.get()), relation.relationPath(), relation.relationValue()));
         }
-        
-        return result;
+        return Optional.of(String.format("Page [%s] relates to page [%s], but member [%s] does not define the expected relation property [%s].", relation.page(), relation.relatedPage(), member, relation.relationPath()));
+    }
+
+    /**
+     * Find the positions of the related page's member values that satisfy a relation.
+     *
+     * @param relation The relation.
+     * @param column The decoded member values of the related page.
+     * @return The range of matching positions.
+     */
+    static MatchingRange getMatchingRange(RelationData relation, TimestampColumn column) {
+        var value = TimestampColumn.decode(relation.relationValue());
+        // As in the former comparisons, (equal or) greater than relations accept values before (or at) the relation's
+        // value and (equal or) less than relations values after (or at) it.
+        return switch (relation.relationType()) {
+            case EqualToRelation -> new MatchingRange(relation, column, column.lowerBound(value), column.upperBound(value));
+            case GreaterThanRelation -> new MatchingRange(relation, column, 0, column.lowerBound(value));
+            case GreaterThanOrEqualToRelation -> new MatchingRange(relation, column, 0, column.upperBound(value));
+            case LessThanRelation -> new MatchingRange(relation, column, column.upperBound(value), column.size());
+            case LessThanOrEqualToRelation -> new MatchingRange(relation, column, column.lowerBound(value), column.size());
+        };
     }
 
     /**
      * Detect the time-based relations to validate.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @return The relations.
      */
-    private List<RelationData> getRelationsToCheck(Model inputModel) {
-        var results = new ArrayList<RelationData>();
-        String query = """
-            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-            PREFIX tree: <https://w3id.org/tree#>
-            select DISTINCT ?Subject ?RelationType ?RelatedPage ?PropertyPath ?RelationValue  where {
-                    ?Node rdf:type tree:Node ;
-                        rdf:subject ?Subject ;
-                        tree:relation ?Relation .
-                    ?Relation rdf:type ?RelationType ;
-                        tree:node ?RelatedPage ;
-                        tree:value ?RelationValue ;
-                        tree:path ?PropertyPath .
-            }
-        """;
-        try (var queryExecution = QueryExecutionFactory.create(query, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            while (resultSet.hasNext()) {
-                var entry = resultSet.next();
-                results.add(new RelationData(
-                        entry.get("Subject").toString(),
-                        RelationType.fromProperty(entry.get("RelationType").toString()),
-                        toDate(entry.get("RelationValue").toString()),
-                        entry.get("PropertyPath").toString(),
-                        entry.get("RelatedPage").toString()
-                ));
-            }
-            resultSet.close();
-        }
- 
-        return results;
+    private List<RelationData> getRelationsToCheck(CrawlIndex index) {
+        return index.relations().stream()
+                .map(relation -> new RelationData(relation.page(), RelationType.fromProperty(relation.relationType()), relation.relationValue(), relation.relationPath(), relation.relatedPage()))
+                .toList();
     }
 
     /**
      * Get the members of a given page.
      *
-     * @param inputModel The input model.
+     * @param index The index of the input content.
      * @param page The page's subject.
      * @return The list of member subjects.
      */
-    private List<String> getPageMembers(Model inputModel, String page) {
-        var results = new ArrayList<String>();
-        String memberQuery = String.format("""
-                PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-                PREFIX tree: <https://w3id.org/tree#>
-                PREFIX crawler: <http://example.org/>
-                PREFIX ldes: <https://w3id.org/ldes#>
-                select DISTINCT ?PageMember where {
-                    ?Page rdf:type crawler:CrawledPage ;
-                        crawler:has_contents ?PageContent .
-                    ?PageContent rdf:type ldes:EventStream ;
-                         tree:member ?PageMember .
-                    FILTER(?PageSource = "%s")
-                }
-            """, page);
-        try (var queryExecution = QueryExecutionFactory.create(memberQuery, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            resultSet.forEachRemaining(entry -> results.add(entry.get("PageMember").toString()));
-            resultSet.close();
-        }
-        return results;
+    private List<String> getPageMembers(CrawlIndex index, String page) {
+        return index.members(page);
     }
 
     /**
      * Get the property value for a given member to compare against the relation's value.
      *
-     * @param inputModel The input model.
-     * @param memberSubject The member's subject.
-     * @param property The property name to lookup.
+     * @param column The decoded member values of the member's page.
+     * @param position The member's index in its page.
      * @return The property value (if found).
      */
-    private Optional<List<String>> getMemberValue(Model inputModel, String memberSubject, String property) {
-        var memberValueQuery = String.format("""
-            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
-            select ?MemberValue where {
-                ?Member rdf:subject ?MemberSubject ;
-                    <%s> ?MemberValue .
-                FILTER(?MemberSubject = <%s>)
-            }
-        """, property, memberSubject);
-        try (var queryExecution = QueryExecutionFactory.create(memberValueQuery, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            if (resultSet.hasNext()) {
-                List<String> returnSet = new ArrayList<>();
-                while (resultSet.hasNext()) {
-                    // Access individual query solution
-                    QuerySolution solution = resultSet.nextSolution();
-                    returnSet.add(solution.get("MemberValue").toString());
-                }
-                return Optional.of(returnSet);
-            }
-        }
-        return Optional.empty();
+    private Optional<List<String>> getMemberValue(TimestampColumn column, int position) {
+        var values = column.values(position);
+        return values.isEmpty() ? Optional.empty() : Optional.of(values);
     }
 
     /**
@@ -218,7 +182,26 @@ public class RelationTimestampValidationHandler {
      * @param relationPath The property path of the relation (to be looked-up in members).
      * @param relatedPage The related page's subject.
      */
-    record RelationData(String page, RelationType relationType, OffsetDateTime relationValue, String relationPath, String relatedPage) {}
+    record RelationData(String page, RelationType relationType, String relationValue, String relationPath, String relatedPage) {}
+
+    /**
+     * Record to capture the member values that satisfy a relation.
+     *
+     * @param relation The relation.
+     * @param column The decoded member values of the related page.
+     * @param from The first matching position.
+     * @param to The position following the last matching one.
+     */
+    record MatchingRange(RelationData relation, TimestampColumn column, int from, int to) {}
+
+    /**
+     * Record to capture a member to check against a relation.
+     *
+     * @param range The relation and its matching member values.
+     * @param member The member's subject.
+     * @param position The member's index in its page.
+     */
+    record MemberCheck(MatchingRange range, String member, int position) {}
 
     /**
      * The types of relations to consider.
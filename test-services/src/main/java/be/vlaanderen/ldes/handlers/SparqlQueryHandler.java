@@ -1,40 +1,231 @@
 package be.vlaanderen.ldes.handlers;
 
-import org.apache.jena.graph.Factory;
-import org.apache.jena.query.QueryExecutionFactory;
+import be.vlaanderen.ldes.artifacts.ArtifactStore;
+import be.vlaanderen.ldes.storage.ContentModelProvider;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFormatter;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.StringReader;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handle SPARQL select queries.
+ * <p>
+ * Queries run within limits (see {@link QueryLimits}): a query is cancelled once its timeout elapses, and fails once
+ * it exceeds its maximum number of rows, raising a {@link QueryLimitException} in both cases. Test cases can lower the
+ * configured limits per call, but not raise them, so that a single expensive query does not hold a worker thread (and
+ * CPU) indefinitely.
  */
 @Component
 public class SparqlQueryHandler {
 
+    @Autowired
+    private ContentModelProvider contentModelProvider;
+    @Autowired
+    private ArtifactStore artifactStore;
+    @Autowired
+    private ValidationExecutor executor;
+    @Autowired
+    private CompiledQueryCache queryCache;
+    @Value("${sparql.timeoutSeconds:60}")
+    private long timeoutSeconds;
+    @Value("${sparql.maxRows:0}")
+    private long maxRows;
+
+    /**
+     * Get the limits of a query, lowering the configured ones to the requested ones (if any).
+     *
+     * @param requestedTimeoutSeconds The requested timeout in seconds.
+     * @param requestedMaxRows The requested maximum number of rows.
+     * @return The limits.
+     * @throws IllegalArgumentException If a requested limit is not positive.
+     */
+    public QueryLimits limits(Optional<Long> requestedTimeoutSeconds, Optional<Long> requestedMaxRows) {
+        return new QueryLimits(
+                TimeUnit.SECONDS.toMillis(lower(timeoutSeconds, requestedTimeoutSeconds, "timeout")),
+                lower(maxRows, requestedMaxRows, "maxRows"));
+    }
+
+    private static long lower(long configured, Optional<Long> requested, String name) {
+        if (requested.isEmpty()) {
+            return configured;
+        }
+        if (requested.get() <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] for [%s] (expected a positive number).", requested.get(), name));
+        }
+        return configured > 0 ? Math.min(configured, requested.get()) : requested.get();
+    }
+
     /**
      * Execute a SPARQL select query on the provided input.
      *
-     * @param inputContent The input to query.
+     * @param inputContent The input to query (or the handle of a crawl's dataset, queried in place).
      * @param inputContentType The content type of the input.
      * @param query The SPARQL query to execute.
+     * @param limits The limits of the query.
      * @return The query's result set as an XML string.
+     * @throws QueryLimitException If the query exceeds its limits.
      */
-    public String select(String inputContent, String inputContentType, String query) {
-        var inputModel = ModelFactory.createModelForGraph(Factory.createDefaultGraph());
-        try (var reader = new StringReader(inputContent)) {
-            inputModel.read(reader, null, RDFLanguages.contentTypeToLang(inputContentType).getName());
-        }
+    public String select(String inputContent, String inputContentType, String query, QueryLimits limits) {
         String queryResultAsXml;
-        try (var queryExecution = QueryExecutionFactory.create(query, inputModel)) {
-            var resultSet = queryExecution.execSelect();
-            queryResultAsXml = ResultSetFormatter.asXMLString(resultSet);
-            resultSet.close();
+        try (var input = contentModelProvider.open(inputContent, inputContentType)) {
+            var resultSet = execSelect(input.dataset(), query, limits);
+            try {
+                queryResultAsXml = ResultSetFormatter.asXMLString(resultSet);
+            } finally {
+                resultSet.close();
+            }
         }
         return queryResultAsXml;
     }
 
+    /**
+     * Execute a SPARQL select query on the provided input, returning its results in a given format.
+     *
+     * @param inputContent The input to query (or the handle of a crawl's dataset, queried in place).
+     * @param inputContentType The content type of the input.
+     * @param query The SPARQL query to execute.
+     * @param limits The limits of the query.
+     * @param resultLang The format of the results (see {@link #resultLang(String)}).
+     * @return The query's results as a string.
+     * @throws QueryLimitException If the query exceeds its limits.
+     */
+    public String select(String inputContent, String inputContentType, String query, QueryLimits limits, Lang resultLang) {
+        try (var input = contentModelProvider.open(inputContent, inputContentType)) {
+            return select(input.dataset(), query, limits, resultLang, false);
+        }
+    }
+
+    /**
+     * Execute a SPARQL select query on the provided input, writing its results to a stream as they are produced.
+     *
+     * @param inputContent The input to query (or the handle of a crawl's dataset, queried in place).
+     * @param inputContentType The content type of the input.
+     * @param query The SPARQL query to execute.
+     * @param limits The limits of the query.
+     * @param resultLang The format of the results (see {@link #resultLang(String)}).
+     * @param output The stream to write the results to.
+     * @throws QueryLimitException If the query exceeds its limits.
+     */
+    public void select(String inputContent, String inputContentType, String query, QueryLimits limits, Lang resultLang, OutputStream output) {
+        try (var input = contentModelProvider.open(inputContent, inputContentType)) {
+            write(execSelect(input.dataset(), query, limits), resultLang, output);
+        }
+    }
+
+    /**
+     * Execute several SPARQL select queries on the provided input, parsed (or opened) once.
+     * <p>
+     * Queries on inline content run in parallel, as the parsed content is read-only. Queries on a crawl's dataset run
+     * one after the other within the read transaction of the calling thread.
+     *
+     * @param inputContent The input to query (or the handle of a crawl's dataset, queried in place).
+     * @param inputContentType The content type of the input.
+     * @param queries The SPARQL queries to execute.
+     * @param limits The limits of each query.
+     * @param resultLang The format of the results (see {@link #resultLang(String)}).
+     * @param handles True to store the results as artifacts (see {@link ArtifactStore}) and return their handles.
+     * @return The results (or their handles) in the order of the queries.
+     * @throws QueryLimitException If a query exceeds its limits.
+     */
+    public List<String> selectAll(String inputContent, String inputContentType, List<String> queries, QueryLimits limits, Lang resultLang, boolean handles) {
+        try (var input = contentModelProvider.open(inputContent, inputContentType)) {
+            return executor.run(queries, query -> select(input.dataset(), query, limits, resultLang, handles), !input.isTransactional());
+        }
+    }
+
+    private String select(Dataset dataset, String query, QueryLimits limits, Lang resultLang, boolean handle) {
+        if (handle) {
+            return artifactStore.write(output -> write(execSelect(dataset, query, limits), resultLang, output));
+        }
+        if (ResultSetLang.RS_XML.equals(resultLang)) {
+            var resultSet = execSelect(dataset, query, limits);
+            try {
+                return ResultSetFormatter.asXMLString(resultSet);
+            } finally {
+                resultSet.close();
+            }
+        }
+        var output = new ByteArrayOutputStream();
+        write(execSelect(dataset, query, limits), resultLang, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void write(ResultSet resultSet, Lang resultLang, OutputStream output) {
+        try {
+            ResultSetMgr.write(output, resultSet, resultLang);
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * Execute a select query from its compiled form (see {@link CompiledQueryCache}).
+     *
+     * @param dataset The dataset to query.
+     * @param query The SPARQL query.
+     * @param limits The limits of the query.
+     * @return The results (to be closed).
+     */
+    private ResultSet execSelect(Dataset dataset, String query, QueryLimits limits) {
+        return queryCache.get(query).execute(dataset.asDatasetGraph(), new QuerySolutionMap(), limits.timeoutMillis(), limits.maxRows());
+    }
+
+    /**
+     * Count the solutions of a SPARQL select query on the provided input (without serialising them).
+     *
+     * @param inputContent The input to query (or the handle of a crawl's dataset, queried in place).
+     * @param inputContentType The content type of the input.
+     * @param query The SPARQL query to execute.
+     * @param limits The limits of the query (its solutions are counted, so only its timeout applies).
+     * @return The number of solutions.
+     * @throws QueryLimitException If the query exceeds its timeout.
+     */
+    public long count(String inputContent, String inputContentType, String query, QueryLimits limits) {
+        try (var input = contentModelProvider.open(inputContent, inputContentType)) {
+            var resultSet = execSelect(input.dataset(), query, new QueryLimits(limits.timeoutMillis(), 0));
+            try {
+                return ResultSetFormatter.consume(resultSet);
+            } finally {
+                resultSet.close();
+            }
+        }
+    }
+
+    /**
+     * Get the format of query results.
+     *
+     * @param format The format's name ("xml", "json", "csv" or "tsv").
+     * @return The format.
+     */
+    public static Lang resultLang(String format) {
+        return switch (format) {
+            case "xml" -> ResultSetLang.RS_XML;
+            case "json" -> ResultSetLang.RS_JSON;
+            case "csv" -> ResultSetLang.RS_CSV;
+            case "tsv" -> ResultSetLang.RS_TSV;
+            default -> throw new IllegalArgumentException(String.format("Unexpected result format [%s].", format));
+        };
+    }
+
+    /**
+     * The limits of a query execution.
+     *
+     * @param timeoutMillis The time after which the query is cancelled (0 for no timeout).
+     * @param maxRows The maximum number of rows (0 for no maximum).
+     */
+    public record QueryLimits(long timeoutMillis, long maxRows) {}
+
 }
@@ -0,0 +1,207 @@
+package be.vlaanderen.ldes.handlers;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches string values against all prefix, substring and suffix relation values of a page in a single pass per value.
+ * <p>
+ * Prefixes are stored in a trie that is walked from the start of a value and suffixes in a trie of the reversed
+ * suffixes that is walked from its end, each node reached marking the relation values ending there. Substrings are
+ * found with an Aho-Corasick automaton (the substring trie with failure links), which reports all relation values
+ * occurring in a value while reading each of its characters once. Checking a value thus no longer depends on the number
+ * of relations, as it did when scanning the value once per relation.
+ * <p>
+ * Instances are not modified after construction and can be shared by threads.
+ */
+final class StringRelationMatcher {
+
+    private final Map<String, Integer> prefixIds = new HashMap<>();
+    private final Map<String, Integer> substringIds = new HashMap<>();
+    private final Map<String, Integer> suffixIds = new HashMap<>();
+    private final Node prefixes = new Node();
+    private final Node substrings = new Node();
+    private final Node suffixes = new Node();
+
+    /**
+     * Constructor.
+     *
+     * @param prefixValues The values of the prefix relations.
+     * @param substringValues The values of the substring relations.
+     * @param suffixValues The values of the suffix relations.
+     */
+    StringRelationMatcher(Collection<String> prefixValues, Collection<String> substringValues, Collection<String> suffixValues) {
+        for (var value : prefixValues) {
+            add(prefixes, prefixIds, value, false);
+        }
+        for (var value : substringValues) {
+            add(substrings, substringIds, value, false);
+        }
+        for (var value : suffixValues) {
+            add(suffixes, suffixIds, value, true);
+        }
+        linkFailures(substrings);
+    }
+
+    /**
+     * Match a value against all relation values.
+     *
+     * @param value The value.
+     * @return The relation values it starts with, contains and ends with.
+     */
+    Matches match(String value) {
+        var matches = new Matches();
+        var node = prefixes;
+        matches.prefixes.or(node.outputs);
+        for (int i = 0; i < value.length() && node != null; i++) {
+            node = node.child(value.charAt(i));
+            if (node != null) {
+                matches.prefixes.or(node.outputs);
+            }
+        }
+        node = suffixes;
+        matches.suffixes.or(node.outputs);
+        for (int i = value.length() - 1; i >= 0 && node != null; i--) {
+            node = node.child(value.charAt(i));
+            if (node != null) {
+                matches.suffixes.or(node.outputs);
+            }
+        }
+        node = substrings;
+        matches.substrings.or(node.outputs);
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            while (node != substrings && node.child(c) == null) {
+                node = node.failure;
+            }
+            var next = node.child(c);
+            node = next == null ? substrings : next;
+            matches.substrings.or(node.outputs);
+        }
+        return matches;
+    }
+
+    private static void add(Node root, Map<String, Integer> ids, String value, boolean reversed) {
+        if (ids.containsKey(value)) {
+            return;
+        }
+        var id = ids.size();
+        ids.put(value, id);
+        var node = root;
+        for (int i = 0; i < value.length(); i++) {
+            node = node.childOrAdd(value.charAt(reversed ? value.length() - 1 - i : i));
+        }
+        node.outputs.set(id);
+    }
+
+    /**
+     * Link each node of a trie to the node of its longest proper suffix (breadth-first), merging the relation values
+     * ending there into its own so that a match reports all of them.
+     */
+    private static void linkFailures(Node root) {
+        root.failure = root;
+        var queue = new ArrayDeque<Node>();
+        for (int i = 0; i < root.size; i++) {
+            root.children[i].failure = root;
+            queue.add(root.children[i]);
+        }
+        while (!queue.isEmpty()) {
+            var node = queue.poll();
+            for (int i = 0; i < node.size; i++) {
+                var c = node.labels[i];
+                var child = node.children[i];
+                var failure = node.failure;
+                while (failure != root && failure.child(c) == null) {
+                    failure = failure.failure;
+                }
+                var target = failure.child(c);
+                child.failure = target == null ? root : target;
+                child.outputs.or(child.failure.outputs);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * The relation values matched by a value.
+     */
+    final class Matches {
+
+        private final BitSet prefixes = new BitSet();
+        private final BitSet substrings = new BitSet();
+        private final BitSet suffixes = new BitSet();
+
+        /**
+         * @param relationValue The value of a prefix relation.
+         * @return True if the value starts with it.
+         */
+        boolean startsWith(String relationValue) {
+            return has(prefixes, prefixIds, relationValue);
+        }
+
+        /**
+         * @param relationValue The value of a substring relation.
+         * @return True if the value contains it.
+         */
+        boolean contains(String relationValue) {
+            return has(substrings, substringIds, relationValue);
+        }
+
+        /**
+         * @param relationValue The value of a suffix relation.
+         * @return True if the value ends with it.
+         */
+        boolean endsWith(String relationValue) {
+            return has(suffixes, suffixIds, relationValue);
+        }
+
+        private boolean has(BitSet matches, Map<String, Integer> ids, String relationValue) {
+            var id = ids.get(relationValue);
+            if (id == null) {
+                throw new IllegalArgumentException(String.format("Relation value [%s] was not provided to the matcher.", relationValue));
+            }
+            return matches.get(id);
+        }
+    }
+
+    /**
+     * A trie node, with its children sorted by character.
+     */
+    private static final class Node {
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private final BitSet outputs = new BitSet();
+        private Node failure;
+
+        Node child(char c) {
+            var i = Arrays.binarySearch(labels, 0, size, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrAdd(char c) {
+            var i = Arrays.binarySearch(labels, 0, size, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            var insertion = -i - 1;
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(2, size * 2));
+                children = Arrays.copyOf(children, labels.length);
+            }
+            System.arraycopy(labels, insertion, labels, insertion + 1, size - insertion);
+            System.arraycopy(children, insertion, children, insertion + 1, size - insertion);
+            var child = new Node();
+            labels[insertion] = c;
+            children[insertion] = child;
+            size++;
+            return child;
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package be.vlaanderen.ldes.handlers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The time-based values of a property of the members of a page, decoded once into epoch nanoseconds.
+ * <p>
+ * Values are sorted so that the values matching a time-based relation form a range of positions that is found through
+ * binary search ({@link #lowerBound(long)} and {@link #upperBound(long)}). Each member value keeps the position of its
+ * (first equal) sorted value, so checking whether a member has a value within a range compares integers only. Equal
+ * values share their position, which is fine as ranges never split a run of equal values.
+ * <p>
+ * Supported literals are xsd:dateTime, xsd:dateTimeStamp and xsd:date (at midnight) with any number of fractional
+ * digits and an optional offset (UTC if missing), as well as xsd:time (as nanoseconds of the day). Instants must lie
+ * between the years 1677 and 2262 (the range of epoch nanoseconds in a long). Instances are immutable.
+ */
+public final class TimestampColumn {
+
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+    private static final DateTimeFormatter DATE_TIME = withOptionalOffset(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    private static final DateTimeFormatter DATE = withOptionalOffset(DateTimeFormatter.ISO_LOCAL_DATE);
+    private static final DateTimeFormatter TIME = withOptionalOffset(DateTimeFormatter.ISO_LOCAL_TIME);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /** The decoded values of all members (ascending). */
+    private final long[] sorted;
+    /** The values of member i are at indexes memberStart[i] (inclusive) to memberStart[i + 1] (exclusive). */
+    private final int[] memberStart;
+    /** The sorted position of each member value. */
+    private final int[] positions;
+    /** The literal of each member value. */
+    private final List<String> literals;
+
+    private TimestampColumn(long[] sorted, int[] memberStart, int[] positions, List<String> literals) {
+        this.sorted = sorted;
+        this.memberStart = memberStart;
+        this.positions = positions;
+        this.literals = literals;
+    }
+
+    /**
+     * Decode the values of the members of a page.
+     *
+     * @param members The page's members (referred to by their index in this list).
+     * @param valuesOf The function providing the literals of a member's property.
+     * @return The column.
+     * @throws IllegalStateException If a value is not a supported time-based literal.
+     */
+    public static TimestampColumn of(List<String> members, Function<String, List<String>> valuesOf) {
+        var memberStart = new int[members.size() + 1];
+        var literals = new ArrayList<String>();
+        for (int i = 0; i < members.size(); i++) {
+            literals.addAll(valuesOf.apply(members.get(i)));
+            memberStart[i + 1] = literals.size();
+        }
+        var values = new long[literals.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = decode(literals.get(i));
+        }
+        var sorted = values.clone();
+        Arrays.sort(sorted);
+        var positions = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            positions[i] = lowerBound(sorted, values[i]);
+        }
+        return new TimestampColumn(sorted, memberStart, positions, List.copyOf(literals));
+    }
+
+    /**
+     * Decode a time-based literal.
+     *
+     * @param literal The literal (as "value^^datatype").
+     * @return The literal's instant in nanoseconds since the epoch (or the time of day in nanoseconds for xsd:time).
+     * @throws IllegalStateException If the literal is not a supported time-based literal.
+     */
+    public static long decode(String literal) {
+        var separator = literal == null ? -1 : literal.lastIndexOf("^^");
+        if (separator < 0) {
+            throw new IllegalStateException(String.format("Unexpected value [%s] for date-based property.", literal));
+        }
+        var lexical = literal.substring(0, separator);
+        var type = literal.substring(separator + 2);
+        try {
+            return switch (type) {
+                case XSD + "dateTime", XSD + "dateTimeStamp" -> {
+                    var parsed = DATE_TIME.parse(lexical);
+                    var dateTime = LocalDateTime.from(parsed);
+                    yield toNanos(dateTime.toEpochSecond(offsetOf(parsed)), dateTime.getNano());
+                }
+                case XSD + "date" -> {
+                    var parsed = DATE.parse(lexical);
+                    yield toNanos(LocalDate.from(parsed).toEpochSecond(LocalTime.MIDNIGHT, offsetOf(parsed)), 0);
+                }
+                case XSD + "time" -> {
+                    var parsed = TIME.parse(lexical);
+                    yield LocalTime.from(parsed).toNanoOfDay() - offsetOf(parsed).getTotalSeconds() * NANOS_PER_SECOND;
+                }
+                default -> throw new IllegalStateException(String.format("Unexpected type [%s] for date-based property.", type));
+            };
+        } catch (DateTimeParseException e) {
+            throw new IllegalStateException(String.format("Invalid value [%s] for date-based property.", literal), e);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException(String.format("Value [%s] is outside the supported range.", literal), e);
+        }
+    }
+
+    /**
+     * @return The number of values of all members.
+     */
+    public int size() {
+        return sorted.length;
+    }
+
+    /**
+     * Find the position of the first value that is not before an instant.
+     *
+     * @param nanos The instant.
+     * @return The position ({@link #size()} if all values are before the instant).
+     */
+    public int lowerBound(long nanos) {
+        return lowerBound(sorted, nanos);
+    }
+
+    /**
+     * Find the position of the first value that is after an instant.
+     *
+     * @param nanos The instant.
+     * @return The position ({@link #size()} if no value is after the instant).
+     */
+    public int upperBound(long nanos) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the literals of a member.
+     *
+     * @param member The member's index.
+     * @return The literals (empty if the member does not define the property).
+     */
+    public List<String> values(int member) {
+        return literals.subList(memberStart[member], memberStart[member + 1]);
+    }
+
+    /**
+     * Get the literals of a member whose values are within a range of positions.
+     *
+     * @param member The member's index.
+     * @param from The first position of the range.
+     * @param to The position following the range.
+     * @return The literals (in the member's order).
+     */
+    public List<String> valuesWithin(int member, int from, int to) {
+        List<String> values = List.of();
+        for (int i = memberStart[member]; i < memberStart[member + 1]; i++) {
+            if (positions[i] >= from && positions[i] < to) {
+                if (values.isEmpty()) {
+                    values = new ArrayList<>();
+                }
+                values.add(literals.get(i));
+            }
+        }
+        return values;
+    }
+
+    private static int lowerBound(long[] sorted, long nanos) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long toNanos(long epochSecond, int nano) {
+        return Math.addExact(Math.multiplyExact(epochSecond, NANOS_PER_SECOND), nano);
+    }
+
+    private static ZoneOffset offsetOf(TemporalAccessor parsed) {
+        return ZoneOffset.ofTotalSeconds(parsed.get(ChronoField.OFFSET_SECONDS));
+    }
+
+    private static DateTimeFormatter withOptionalOffset(DateTimeFormatter formatter) {
+        return new DateTimeFormatterBuilder()
+                .append(formatter)
+                .optionalStart().appendOffsetId().optionalEnd()
+                .parseDefaulting(ChronoField.OFFSET_SECONDS, 0)
+                .toFormatter();
+    }
+
+}
@@ -0,0 +1,22 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+
+/**
+ * The TREE terms that link pages together (captured while parsing pages by {@link PageGraphSink}).
+ */
+public final class TreeRelations {
+
+    /** The TREE namespace. */
+    public static final String NS = "https://w3id.org/tree#";
+    /** tree:Node */
+    public static final Node NODE_TYPE = NodeFactory.createURI(NS + "Node");
+    /** tree:relation */
+    public static final Node RELATION = NodeFactory.createURI(NS + "relation");
+    /** tree:node */
+    public static final Node NODE = NodeFactory.createURI(NS + "node");
+
+    private TreeRelations() {}
+
+}
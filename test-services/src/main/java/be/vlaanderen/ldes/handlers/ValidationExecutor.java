@@ -0,0 +1,106 @@
+package be.vlaanderen.ldes.handlers;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Carries out the independent checks of a validation (such as a relation's check of one member), either sequentially
+ * on the calling thread or in parallel on a fork/join pool shared by all validations.
+ * <p>
+ * The pool is sized to the processors available to the container unless configured otherwise. In parallel mode the
+ * checks are split recursively into ranges that are processed by the pool's workers, each result being stored at the
+ * index of its check so that results (and thus the reported errors) are in the same order as in sequential mode.
+ * Checks must therefore be read-only with respect to shared state.
+ */
+@Component
+public class ValidationExecutor {
+
+    /** The number of ranges per worker that checks are split into (for load balancing). */
+    private static final int RANGES_PER_WORKER = 4;
+
+    @Value("${validation.parallelism:0}")
+    private int parallelism;
+    private ForkJoinPool pool;
+
+    /**
+     * Create the pool.
+     */
+    @PostConstruct
+    void initialise() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Shut down the pool.
+     */
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Carry out checks.
+     *
+     * @param checks The checks to carry out.
+     * @param check The function carrying out a check.
+     * @param parallel True to carry out the checks in parallel.
+     * @return The results of the checks (in the order of the checks).
+     * @param <T> The type of checks.
+     * @param <R> The type of results.
+     */
+    public <T, R> List<R> run(List<T> checks, Function<T, R> check, boolean parallel) {
+        if (!parallel || checks.size() < 2) {
+            return checks.stream().map(check).toList();
+        }
+        var results = new Object[checks.size()];
+        var threshold = Math.max(1, checks.size() / (pool.getParallelism() * RANGES_PER_WORKER));
+        pool.invoke(new CheckRange<>(checks, check, results, 0, checks.size(), threshold));
+        @SuppressWarnings("unchecked")
+        var list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * A range of checks, split in two until it is small enough to be carried out by a single worker.
+     */
+    private static final class CheckRange<T, R> extends RecursiveAction {
+
+        private final List<T> checks;
+        private final Function<T, R> check;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        CheckRange(List<T> checks, Function<T, R> check, Object[] results, int from, int to, int threshold) {
+            this.checks = checks;
+            this.check = check;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    results[i] = check.apply(checks.get(i));
+                }
+            } else {
+                var middle = (from + to) >>> 1;
+                invokeAll(new CheckRange<>(checks, check, results, from, middle, threshold),
+                        new CheckRange<>(checks, check, results, middle, to, threshold));
+            }
+        }
+    }
+
+}
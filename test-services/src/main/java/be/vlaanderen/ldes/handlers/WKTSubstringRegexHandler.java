@@ -63,10 +63,9 @@ private static final Logger LOG = LoggerFactory.getLogger(
                         String message = String.format("Current value [%s] doesn't contains a WKT Literal inside", uriList1.item(i).getTextContent());
                         errorMessages.add(message);
                         logger.log(message, LogLevel.ERROR);
-                        } else
-                        {
+                        } else if (logger.isEnabled(LogLevel.DEBUG) || LOG.isDebugEnabled()) {
                             String message = String.format("Current value [%s] contains a WKT Literal inside", uriList1.item(i).getTextContent());
-                            logger.log(String.format(message), LogLevel.DEBUG);
+                            logger.log(message, LogLevel.DEBUG);
                             LOG.debug(message);
                         }
                     }
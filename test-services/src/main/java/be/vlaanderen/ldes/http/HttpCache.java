@@ -0,0 +1,449 @@
+package be.vlaanderen.ldes.http;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed HTTP cache for GET requests.
+ * <p>
+ * LDES servers mark closed fragments as immutable and other pages with a max-age through the Cache-Control header.
+ * Fresh entries are served without any network call, while stale entries are revalidated with If-None-Match and
+ * If-Modified-Since so that an unchanged page only costs a 304 response. Entries are kept in a local directory (one
+ * body and one metadata file per entry) and the least recently used entries are evicted once the cache exceeds its
+ * maximum size. Bodies are stored decompressed, so the stored headers do not describe their encoding or length. As
+ * pages that are not yet immutable change when data is posted to a server, the entries of a server are removed when
+ * the test services post to it (see {@link #invalidate(String)}).
+ */
+@Component
+public class HttpCache {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(HttpCache.class);
+
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".meta";
+    /** Headers describing the encoded body of a response, which do not apply to the decompressed stored body. */
+    private static final Set<String> ENCODING_HEADERS = Set.of("content-encoding", "content-length");
+
+    @Autowired
+    private HttpClientService httpClient;
+    @Value("${http.cache.directory:#{systemProperties['java.io.tmpdir']}/ldes-http-cache}")
+    private String directoryPath;
+    @Value("${http.cache.maxSizeMb:512}")
+    private long maxSizeMb;
+
+    /** The size of each entry's body in least recently used order. */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** The server (scheme and authority) of each entry, if known (guarded by this). */
+    private final Map<String, String> servers = new HashMap<>();
+    private Path directory;
+    private long totalSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Load the index of the entries already present in the cache directory.
+     */
+    @PostConstruct
+    void initialise() throws IOException {
+        directory = Files.createDirectories(Path.of(directoryPath));
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(META_EXTENSION))
+                    .sorted(Comparator.comparing(HttpCache::lastModified))
+                    .forEach(metaFile -> {
+                        var key = metaFile.getFileName().toString().replace(META_EXTENSION, "");
+                        var bodyFile = directory.resolve(key + BODY_EXTENSION);
+                        if (Files.exists(bodyFile)) {
+                            var size = size(bodyFile);
+                            entries.put(key, size);
+                            totalSize += size;
+                            readServer(metaFile).ifPresent(server -> servers.put(key, server));
+                        }
+                    });
+        }
+        evict();
+        LOG.info("HTTP cache at [{}] holds {} entries ({} bytes).", directory, entries.size(), totalSize);
+    }
+
+    /**
+     * Send a GET request through the cache (following redirects, as crawls do).
+     *
+     * @param request The request.
+     * @return The (possibly cached) response, its body must be closed by the caller.
+     */
+    public HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException {
+        var key = keyOf(request);
+        var cached = readEntry(key);
+        if (cached.isPresent()) {
+            var entry = cached.get();
+            if (entry.isFresh()) {
+                hits.incrementAndGet();
+                touch(key);
+                LOG.debug("Serving [{}] from the HTTP cache.", request.uri());
+                return entry.toResponse(request, bodyFile(key));
+            }
+            if (entry.etag() != null || entry.lastModified() != null) {
+                var conditionalRequest = HttpRequest.newBuilder(request, (name, value) -> true);
+                if (entry.etag() != null) {
+                    conditionalRequest.header("If-None-Match", entry.etag());
+                }
+                if (entry.lastModified() != null) {
+                    conditionalRequest.header("If-Modified-Since", entry.lastModified());
+                }
+                var response = httpClient.send(conditionalRequest.build(), true);
+                if (response.statusCode() == 304) {
+                    response.body().close();
+                    revalidations.incrementAndGet();
+                    var revalidated = entry.revalidated(response.headers());
+                    writeMeta(key, request.uri(), revalidated);
+                    touch(key);
+                    LOG.debug("Revalidated [{}] in the HTTP cache.", request.uri());
+                    return revalidated.toResponse(request, bodyFile(key));
+                }
+                return store(key, request, response);
+            }
+        }
+        return store(key, request, httpClient.send(request, true));
+    }
+
+    /**
+     * Remove the entries of a server, whose pages may have changed.
+     *
+     * @param endpoint A URI of the server (e.g. the endpoint data was posted to).
+     */
+    public void invalidate(String endpoint) {
+        var server = serverOf(URI.create(endpoint));
+        synchronized (this) {
+            var iterator = entries.entrySet().iterator();
+            var removed = 0;
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                // Entries stored without their URI cannot be attributed, so they are removed as well.
+                var entryServer = servers.get(entry.getKey());
+                if (entryServer == null || entryServer.equals(server)) {
+                    iterator.remove();
+                    remove(entry.getKey(), entry.getValue());
+                    removed++;
+                }
+            }
+            LOG.info("Invalidated {} HTTP cache entries of [{}].", removed, server);
+        }
+    }
+
+    /**
+     * @return The number of responses served from the cache without, with (304) and after a full network call.
+     */
+    public String getStatistics() {
+        return String.format("%s hits, %s revalidations, %s misses", hits.get(), revalidations.get(), misses.get());
+    }
+
+    /**
+     * Store a network response (if cacheable) and return a response reading from the stored copy.
+     */
+    private HttpResponse<InputStream> store(String key, HttpRequest request, HttpResponse<InputStream> response) throws IOException {
+        misses.incrementAndGet();
+        var cacheControl = CacheControl.parse(response.headers());
+        if (response.statusCode() != 200 || cacheControl.noStore()) {
+            return response;
+        }
+        var temporaryFile = Files.createTempFile(directory, key, ".tmp");
+        try (var body = response.body()) {
+            Files.copy(body, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+        var entry = new Entry(response.statusCode(), storedHeaders(response.headers()), System.currentTimeMillis(),
+                cacheControl.maxAge(), cacheControl.immutable(), cacheControl.noCache(),
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null));
+        Files.move(temporaryFile, bodyFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeMeta(key, request.uri(), entry);
+        synchronized (this) {
+            servers.put(key, serverOf(request.uri()));
+            var previousSize = entries.put(key, size(bodyFile(key)));
+            totalSize += entries.get(key) - (previousSize == null ? 0 : previousSize);
+            evict();
+        }
+        return entry.toResponse(request, bodyFile(key));
+    }
+
+    private synchronized void touch(String key) {
+        entries.get(key);
+    }
+
+    /**
+     * Evict the least recently used entries until the cache fits its maximum size (always keeping the most recent one).
+     */
+    private synchronized void evict() {
+        var iterator = entries.entrySet().iterator();
+        while (totalSize > maxSizeMb * 1024 * 1024 && entries.size() > 1) {
+            var eldest = iterator.next();
+            iterator.remove();
+            remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * Remove the files of an entry that was removed from the index.
+     */
+    private synchronized void remove(String key, long size) {
+        totalSize -= size;
+        servers.remove(key);
+        try {
+            Files.deleteIfExists(directory.resolve(key + META_EXTENSION));
+            Files.deleteIfExists(directory.resolve(key + BODY_EXTENSION));
+        } catch (IOException e) {
+            LOG.warn("Unable to remove HTTP cache entry [{}].", key, e);
+        }
+    }
+
+    private static Optional<String> readServer(Path metaFile) {
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(properties.getProperty("uri")).map(uri -> serverOf(URI.create(uri)));
+    }
+
+    private Optional<Entry> readEntry(String key) {
+        var metaFile = directory.resolve(key + META_EXTENSION);
+        if (!Files.exists(metaFile) || !Files.exists(bodyFile(key))) {
+            return Optional.empty();
+        }
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable HTTP cache entry [{}].", key, e);
+            return Optional.empty();
+        }
+        var headers = new ArrayList<String>();
+        for (int i = 0; properties.containsKey("header." + i); i++) {
+            var header = properties.getProperty("header." + i);
+            // Entries stored before encoding headers were dropped may still hold them.
+            if (!ENCODING_HEADERS.contains(header.split(":", 2)[0].trim().toLowerCase(Locale.ROOT))) {
+                headers.add(header);
+            }
+        }
+        return Optional.of(new Entry(
+                Integer.parseInt(properties.getProperty("status")),
+                headers,
+                Long.parseLong(properties.getProperty("storedAt")),
+                Long.parseLong(properties.getProperty("maxAge")),
+                Boolean.parseBoolean(properties.getProperty("immutable")),
+                Boolean.parseBoolean(properties.getProperty("noCache")),
+                properties.getProperty("etag"),
+                properties.getProperty("lastModified")
+        ));
+    }
+
+    private void writeMeta(String key, URI uri, Entry entry) throws IOException {
+        var properties = new Properties();
+        properties.setProperty("uri", uri.toString());
+        properties.setProperty("status", String.valueOf(entry.status()));
+        for (int i = 0; i < entry.headers().size(); i++) {
+            properties.setProperty("header." + i, entry.headers().get(i));
+        }
+        properties.setProperty("storedAt", String.valueOf(entry.storedAt()));
+        properties.setProperty("maxAge", String.valueOf(entry.maxAge()));
+        properties.setProperty("immutable", String.valueOf(entry.immutable()));
+        properties.setProperty("noCache", String.valueOf(entry.noCache()));
+        if (entry.etag() != null) {
+            properties.setProperty("etag", entry.etag());
+        }
+        if (entry.lastModified() != null) {
+            properties.setProperty("lastModified", entry.lastModified());
+        }
+        var temporaryFile = Files.createTempFile(directory, key, ".tmp");
+        try (var writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporaryFile, directory.resolve(key + META_EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path bodyFile(String key) {
+        return directory.resolve(key + BODY_EXTENSION);
+    }
+
+    /**
+     * The cache key of a request: its URI and the representation it accepts.
+     */
+    private static String keyOf(HttpRequest request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.uri().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(request.headers().firstValue("Accept").orElse("").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The headers to store with a (decompressed) body: all but those describing the body's encoding.
+     */
+    private static List<String> storedHeaders(HttpHeaders headers) {
+        var result = new ArrayList<String>();
+        headers.map().forEach((name, values) -> {
+            if (!ENCODING_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                values.forEach(value -> result.add(name + ": " + value));
+            }
+        });
+        return result;
+    }
+
+    private static String serverOf(URI uri) {
+        return (uri.getScheme() + "://" + uri.getAuthority()).toLowerCase(Locale.ROOT);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The caching directives of a response.
+     *
+     * @param maxAge The max-age in seconds (-1 if absent).
+     * @param immutable Whether the response is immutable.
+     * @param noCache Whether the response must be revalidated before each use.
+     * @param noStore Whether the response must not be stored.
+     */
+    private record CacheControl(long maxAge, boolean immutable, boolean noCache, boolean noStore) {
+
+        static CacheControl parse(HttpHeaders headers) {
+            long maxAge = -1;
+            boolean immutable = false, noCache = false, noStore = false;
+            for (var value : headers.allValues("Cache-Control")) {
+                for (var directive : value.split(",")) {
+                    var parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                    switch (parts[0]) {
+                        case "max-age" -> {
+                            try {
+                                maxAge = parts.length == 2 ? Long.parseLong(parts[1].replace("\"", "").trim()) : -1;
+                            } catch (NumberFormatException e) {
+                                maxAge = -1;
+                            }
+                        }
+                        case "immutable" -> immutable = true;
+                        case "no-cache" -> noCache = true;
+                        case "no-store" -> noStore = true;
+                        default -> {}
+                    }
+                }
+            }
+            return new CacheControl(maxAge, immutable, noCache, noStore);
+        }
+    }
+
+    /**
+     * The metadata of a cache entry.
+     *
+     * @param status The status code of the stored response.
+     * @param headers The headers of the stored response ("name: value").
+     * @param storedAt The time (epoch milliseconds) the entry was stored or last revalidated.
+     * @param maxAge The max-age of the entry in seconds (-1 if none).
+     * @param immutable Whether the entry never changes.
+     * @param noCache Whether the entry must be revalidated before each use.
+     * @param etag The entity tag of the entry.
+     * @param lastModified The last modification date of the entry.
+     */
+    private record Entry(int status, List<String> headers, long storedAt, long maxAge, boolean immutable,
+                         boolean noCache, String etag, String lastModified) {
+
+        boolean isFresh() {
+            if (noCache) {
+                return false;
+            }
+            return immutable || (maxAge >= 0 && System.currentTimeMillis() - storedAt < maxAge * 1000);
+        }
+
+        /**
+         * Update the entry with the headers of a 304 (Not Modified) response.
+         */
+        Entry revalidated(HttpHeaders notModifiedHeaders) {
+            var cacheControl = notModifiedHeaders.allValues("Cache-Control").isEmpty() ? null : CacheControl.parse(notModifiedHeaders);
+            return new Entry(status, headers, System.currentTimeMillis(),
+                    cacheControl == null ? maxAge : cacheControl.maxAge(),
+                    cacheControl == null ? immutable : cacheControl.immutable(),
+                    cacheControl == null ? noCache : cacheControl.noCache(),
+                    notModifiedHeaders.firstValue("ETag").orElse(etag),
+                    notModifiedHeaders.firstValue("Last-Modified").orElse(lastModified));
+        }
+
+        HttpResponse<InputStream> toResponse(HttpRequest request, Path bodyFile) throws IOException {
+            var headerMap = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+            for (var header : headers) {
+                var parts = header.split(": ", 2);
+                headerMap.computeIfAbsent(parts[0], name -> new ArrayList<>()).add(parts.length == 2 ? parts[1] : "");
+            }
+            return new CachedResponse(status, HttpHeaders.of(headerMap, (name, value) -> true), request, Files.newInputStream(bodyFile));
+        }
+    }
+
+    /**
+     * Response served from the cache.
+     */
+    private record CachedResponse(int statusCode, HttpHeaders headers, HttpRequest request, InputStream body) implements HttpResponse<InputStream> {
+
+        @Override
+        public Optional<HttpResponse<InputStream>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
+}
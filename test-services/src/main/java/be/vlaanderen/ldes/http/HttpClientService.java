@@ -0,0 +1,365 @@
+package be.vlaanderen.ldes.http;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLSession;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Application-scoped HTTP client used for all outbound calls.
+ * <p>
+ * A single {@link HttpClient} is shared so that connections (and TLS sessions) are pooled and reused across calls.
+ * Requests accept gzip/deflate compressed responses, which are transparently decompressed. Redirects are only followed
+ * for the calls that ask for it (see {@link #send(HttpRequest, boolean)}), and request timeouts are set by callers, so
+ * that each call behaves as with its own client.
+ * <p>
+ * The keep-alive time of pooled connections is set through the JDK's {@code jdk.httpclient.keepalive.timeout} system
+ * property (unless set on the command line), which the JDK reads when the first client is created. As the JDK client
+ * does not expose its connection pool, the number of new versus reused connections per host is not observed but
+ * estimated from the number of requests in flight and this keep-alive time.
+ */
+@Component
+public class HttpClientService {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientService.class);
+
+    /** The instance shared with code that is not managed by Spring. */
+    private static volatile HttpClientService shared;
+
+    /** The property holding the keep-alive time (in seconds) of the JDK client's connection pool. */
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    private final HttpClient client;
+    private final HttpClient redirectingClient;
+    private final Duration keepAlive;
+    private final Map<String, HostStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param connectTimeoutSeconds The timeout to establish a connection.
+     * @param keepAliveSeconds The time idle connections are kept in the pool.
+     */
+    public HttpClientService(@Value("${http.connectTimeoutSeconds:10}") long connectTimeoutSeconds,
+                             @Value("${http.keepAliveSeconds:1200}") long keepAliveSeconds) {
+        if (System.getProperty(KEEP_ALIVE_PROPERTY) == null) {
+            // Must be set before the JDK's connection pool is first used.
+            System.setProperty(KEEP_ALIVE_PROPERTY, String.valueOf(keepAliveSeconds));
+        }
+        this.keepAlive = Duration.ofSeconds(Long.getLong(KEEP_ALIVE_PROPERTY, keepAliveSeconds));
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+        this.redirectingClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+    }
+
+    /**
+     * Register this instance as the shared one once it is created by Spring.
+     */
+    @PostConstruct
+    void registerShared() {
+        shared = this;
+    }
+
+    /**
+     * Get the shared client for use outside Spring-managed components.
+     * <p>
+     * If the application context has not created the client (e.g. when used from a benchmark) a client with default
+     * settings is created.
+     *
+     * @return The client.
+     */
+    public static HttpClientService shared() {
+        var instance = shared;
+        if (instance == null) {
+            synchronized (HttpClientService.class) {
+                if (shared == null) {
+                    shared = new HttpClientService(10, 1200);
+                }
+                instance = shared;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Create a request builder with the accepted content encodings (and no timeout, unless set by the caller).
+     *
+     * @param uri The URI to call.
+     * @return The request builder.
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Accept-Encoding", "gzip, deflate");
+    }
+
+    /**
+     * Send a request (without following redirects) and return its (decompressed) body as a stream.
+     * <p>
+     * The returned stream must be closed by the caller to release the connection.
+     *
+     * @param request The request.
+     * @return The response.
+     */
+    public HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException {
+        return send(request, false);
+    }
+
+    /**
+     * Send a request and return its (decompressed) body as a stream.
+     * <p>
+     * The returned stream must be closed by the caller to release the connection.
+     *
+     * @param request The request.
+     * @param followRedirects True to follow redirects (except from HTTPS to HTTP).
+     * @return The response.
+     */
+    public HttpResponse<InputStream> send(HttpRequest request, boolean followRedirects) throws IOException, InterruptedException {
+        var host = hostOf(request.uri());
+        var hostStatistics = statistics.computeIfAbsent(host, key -> new HostStatistics());
+        hostStatistics.requestStarted(keepAlive);
+        HttpResponse<InputStream> response;
+        try {
+            response = (followRedirects ? redirectingClient : client).send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            hostStatistics.requestCompleted(false);
+            throw e;
+        }
+        var multiplexed = response.version() == HttpClient.Version.HTTP_2;
+        InputStream decoded;
+        try {
+            decoded = decode(response);
+        } catch (IOException e) {
+            response.body().close();
+            hostStatistics.requestCompleted(multiplexed);
+            throw e;
+        }
+        InputStream body = new FilterInputStream(decoded) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    hostStatistics.requestCompleted(multiplexed);
+                }
+                super.close();
+            }
+        };
+        return new DecodedResponse<>(response, body);
+    }
+
+    /**
+     * Send a request (without following redirects) and return its (decompressed) body as a string.
+     *
+     * @param request The request.
+     * @return The response.
+     */
+    public HttpResponse<String> sendForString(HttpRequest request) throws IOException, InterruptedException {
+        var response = send(request);
+        try (var body = response.body()) {
+            return new DecodedResponse<>(response, new String(body.readAllBytes(), charsetOf(response.headers())));
+        }
+    }
+
+    /**
+     * Send a request (without following redirects) and return its (decompressed) body as bytes.
+     *
+     * @param request The request.
+     * @return The response.
+     */
+    public HttpResponse<byte[]> sendForBytes(HttpRequest request) throws IOException, InterruptedException {
+        var response = send(request);
+        try (var body = response.body()) {
+            return new DecodedResponse<>(response, body.readAllBytes());
+        }
+    }
+
+    /**
+     * Get the (estimated) connection statistics collected per host.
+     *
+     * @return The statistics per host (sorted by host).
+     */
+    public Map<String, ConnectionStatistics> getStatistics() {
+        var result = new TreeMap<String, ConnectionStatistics>();
+        statistics.forEach((host, hostStatistics) -> result.put(host, hostStatistics.snapshot()));
+        return result;
+    }
+
+    /**
+     * Log the (estimated) connection statistics of the given host.
+     *
+     * @param uri A URI of the host.
+     */
+    public void logStatistics(String uri) {
+        var hostStatistics = statistics.get(hostOf(URI.create(uri)));
+        if (hostStatistics != null) {
+            var snapshot = hostStatistics.snapshot();
+            LOG.info("Connections to [{}]: {} requests, an estimated {} new and {} reused connections.", hostOf(URI.create(uri)), snapshot.requests(), snapshot.estimatedNewConnections(), snapshot.estimatedReusedConnections());
+        }
+    }
+
+    /**
+     * Wrap the response body in a decompressing stream if the response is compressed.
+     */
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        if (response.statusCode() == 204 || response.statusCode() == 304) {
+            // No body to decode.
+            return response.body();
+        }
+        var encoding = response.headers().firstValue("Content-Encoding").map(String::trim).orElse("identity");
+        return switch (encoding.toLowerCase()) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(response.body());
+            case "deflate" -> new InflaterInputStream(response.body());
+            default -> response.body();
+        };
+    }
+
+    /**
+     * Determine the charset of a response from its content type (defaulting to UTF-8).
+     */
+    private static Charset charsetOf(HttpHeaders headers) {
+        return headers.firstValue("Content-Type")
+                .flatMap(contentType -> {
+                    for (var parameter : contentType.split(";")) {
+                        var parts = parameter.trim().split("=", 2);
+                        if (parts.length == 2 && parts[0].trim().equalsIgnoreCase("charset")) {
+                            try {
+                                return Optional.of(Charset.forName(parts[1].trim().replace("\"", "")));
+                            } catch (IllegalArgumentException e) {
+                                LOG.warn("Ignoring unsupported charset [{}].", parts[1]);
+                            }
+                        }
+                    }
+                    return Optional.empty();
+                })
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * Record reflecting the connection statistics of a host.
+     *
+     * @param requests The number of requests sent (counted).
+     * @param estimatedNewConnections The estimated number of requests that opened a new connection.
+     * @param estimatedReusedConnections The estimated number of requests that reused a pooled connection.
+     */
+    public record ConnectionStatistics(long requests, long estimatedNewConnections, long estimatedReusedConnections) {}
+
+    /**
+     * Connection bookkeeping for a single host.
+     * <p>
+     * The connections are estimated assuming that the pool holds at most as many connections as there were concurrent
+     * requests (or a single one for HTTP/2), and drops them once they have been idle for longer than the keep-alive
+     * time.
+     */
+    private static class HostStatistics {
+
+        private long requests;
+        private long estimatedNewConnections;
+        private long estimatedReusedConnections;
+        private int inFlight;
+        private int pooledConnections;
+        private boolean multiplexed;
+        private long lastActivity;
+
+        synchronized void requestStarted(Duration keepAlive) {
+            var now = System.nanoTime();
+            if (inFlight == 0 && now - lastActivity > keepAlive.toNanos()) {
+                pooledConnections = 0;
+            }
+            lastActivity = now;
+            requests++;
+            inFlight++;
+            var connectionsNeeded = multiplexed ? 1 : inFlight;
+            if (connectionsNeeded > pooledConnections) {
+                estimatedNewConnections++;
+                pooledConnections = connectionsNeeded;
+            } else {
+                estimatedReusedConnections++;
+            }
+        }
+
+        synchronized void requestCompleted(boolean multiplexed) {
+            inFlight--;
+            this.multiplexed = multiplexed;
+            lastActivity = System.nanoTime();
+        }
+
+        synchronized ConnectionStatistics snapshot() {
+            return new ConnectionStatistics(requests, estimatedNewConnections, estimatedReusedConnections);
+        }
+    }
+
+    /**
+     * Response delegating to the original one but exposing a decoded body.
+     *
+     * @param <T> The type of the body.
+     */
+    private record DecodedResponse<T>(HttpResponse<?> response, T body) implements HttpResponse<T> {
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return response.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return response.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return response.version();
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+package be.vlaanderen.ldes.storage;
+
+import be.vlaanderen.ldes.handlers.CrawlIndex;
+import be.vlaanderen.ldes.handlers.CrawlLayout;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.core.DatasetGraphReadOnly;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+
+/**
+ * Provide the RDF content that handlers query.
+ * <p>
+ * Content is either provided inline (parsed into an in-memory dataset) or as a handle to a crawl's disk-backed dataset
+ * (see {@link DatasetStore}), which is then queried in place within a read transaction. Inline Turtle and N-Triples
+ * are parsed as TriG and N-Quads (of which they are subsets), so that crawl results in the named-graph layout
+ * ({@link CrawlLayout#GRAPHS}) can be passed with the same content type as before.
+ * <p>
+ * Test cases typically pass the same crawled content to several steps in a row, so parsed inline content is cached
+ * (read-only, together with its {@link CrawlIndex} once built) per SHA-256 hash of its content type and content. The
+ * cache holds up to a maximum number of triples, the least recently used contents being evicted first. Cached datasets
+ * are only read, so they are shared by concurrent requests.
+ */
+@Component
+public class ContentModelProvider {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(ContentModelProvider.class);
+    /** The number of characters hashed at once. */
+    private static final int HASH_CHUNK = 8192;
+
+    @Autowired
+    private DatasetStore datasetStore;
+    @Value("${content.cache.maxTriples:2000000}")
+    private long maxTriples;
+
+    /** The parsed inline contents in least recently used order (guarded by this). */
+    private final LinkedHashMap<String, ParsedContent> parsed = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalTriples;
+
+    /**
+     * Open the provided content for querying.
+     *
+     * @param content The content (or a dataset handle).
+     * @param contentType The content's type (ignored for dataset handles).
+     * @return The content to query, to be closed once querying completes.
+     */
+    public ContentModel open(String content, String contentType) {
+        if (DatasetStore.isHandle(content)) {
+            var dataset = datasetStore.open(content);
+            dataset.begin(ReadWrite.READ);
+            return new ContentModel(new ParsedContent(dataset, 0), true);
+        }
+        var lang = RDFLanguages.contentTypeToLang(contentType);
+        if (lang == null) {
+            throw new IllegalArgumentException(String.format("Unsupported content type [%s].", contentType));
+        }
+        if (Lang.TURTLE.equals(lang)) {
+            lang = Lang.TRIG;
+        } else if (Lang.NTRIPLES.equals(lang)) {
+            lang = Lang.NQUADS;
+        }
+        var key = hash(contentType, content);
+        var cached = lookup(key);
+        if (cached != null) {
+            LOG.debug("Reusing parsed content [{}].", key);
+            return new ContentModel(cached, false);
+        }
+        var dataset = DatasetFactory.create();
+        RDFParser.fromString(content).lang(lang).parse(dataset);
+        var readOnly = DatasetFactory.wrap(new DatasetGraphReadOnly(dataset.asDatasetGraph()));
+        return new ContentModel(store(key, new ParsedContent(readOnly, tripleCount(dataset))), false);
+    }
+
+    private synchronized ParsedContent lookup(String key) {
+        return parsed.get(key);
+    }
+
+    /**
+     * Cache parsed content (unless it exceeds the cache on its own), evicting the least recently used contents.
+     *
+     * @param key The content's hash.
+     * @param content The parsed content.
+     * @return The cached content (the given one unless the same content was cached concurrently).
+     */
+    private synchronized ParsedContent store(String key, ParsedContent content) {
+        var existing = parsed.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (content.triples > maxTriples) {
+            return content;
+        }
+        parsed.put(key, content);
+        totalTriples += content.triples;
+        var iterator = parsed.entrySet().iterator();
+        while (totalTriples > maxTriples && iterator.hasNext()) {
+            var eldest = iterator.next();
+            LOG.debug("Evicting parsed content [{}].", eldest.getKey());
+            totalTriples -= eldest.getValue().triples;
+            iterator.remove();
+        }
+        return content;
+    }
+
+    private static long tripleCount(Dataset dataset) {
+        var graph = dataset.asDatasetGraph();
+        var count = (long) graph.getDefaultGraph().size();
+        for (var graphNodes = graph.listGraphNodes(); graphNodes.hasNext(); ) {
+            count += graph.getGraph(graphNodes.next()).size();
+        }
+        return count;
+    }
+
+    private static String hash(String contentType, String content) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contentType.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            for (int start = 0; start < content.length(); ) {
+                var end = Math.min(content.length(), start + HASH_CHUNK);
+                if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                    end--;
+                }
+                digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(content, start, end)));
+                start = end;
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Parsed (or stored) content with its crawl layout and index.
+     */
+    private static final class ParsedContent {
+
+        private final Dataset dataset;
+        private final CrawlLayout layout;
+        private final long triples;
+        private CrawlIndex index;
+
+        private ParsedContent(Dataset dataset, long triples) {
+            this.dataset = dataset;
+            this.layout = dataset.containsNamedModel(CrawlLayout.METADATA_GRAPH) ? CrawlLayout.GRAPHS : CrawlLayout.NESTED;
+            this.triples = triples;
+        }
+
+        private synchronized CrawlIndex index() {
+            if (index == null) {
+                index = CrawlIndex.build(dataset, layout);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Content opened for querying.
+     */
+    public static final class ContentModel implements AutoCloseable {
+
+        private final ParsedContent content;
+        private final boolean transactional;
+
+        private ContentModel(ParsedContent content, boolean transactional) {
+            this.content = content;
+            this.transactional = transactional;
+        }
+
+        /**
+         * @return The content as a dataset (triples are in the default graph, or in named graphs per page for the
+         * named-graph layout). Inline content is read-only.
+         */
+        public Dataset dataset() {
+            return content.dataset;
+        }
+
+        /**
+         * @return The content's default graph.
+         */
+        public Model model() {
+            return content.dataset.getDefaultModel();
+        }
+
+        /**
+         * @return The layout of the crawl result ({@link CrawlLayout#GRAPHS} if the dataset holds the page metadata graph).
+         */
+        public CrawlLayout layout() {
+            return content.layout;
+        }
+
+        /**
+         * @return The index of the relations, members and member values of the content (built on first use, and shared
+         * by the requests for the same inline content).
+         */
+        public CrawlIndex index() {
+            return content.index();
+        }
+
+        /**
+         * @return True if the content is a crawl's dataset, read within a transaction of the current thread (inline
+         * content can be read by any thread).
+         */
+        public boolean isTransactional() {
+            return transactional;
+        }
+
+        /**
+         * End the read transaction (if any).
+         */
+        @Override
+        public void close() {
+            if (transactional) {
+                content.dataset.end();
+            }
+        }
+    }
+
+}
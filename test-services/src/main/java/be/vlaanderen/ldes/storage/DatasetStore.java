@@ -0,0 +1,160 @@
+package be.vlaanderen.ldes.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed (Jena TDB2) datasets holding crawled graphs that do not fit in memory, one dataset per crawl id.
+ * <p>
+ * A crawl stored here returns a handle to its dataset rather than its content. Handles are passed through as-is by
+ * {@link be.vlaanderen.ldes.Utils#asString} and opened by the {@link ContentModelProvider}, so that later steps query
+ * the dataset in place. Datasets that were not updated within the retention period are removed at startup and (at most
+ * hourly) when a dataset is created.
+ */
+@Component
+public class DatasetStore {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(DatasetStore.class);
+    /** The prefix of dataset handles (followed by the crawl id). */
+    public static final String HANDLE_PREFIX = "urn:ldes:dataset:";
+    private static final Pattern CRAWL_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    @Value("${crawler.tdb2.directory:#{systemProperties['java.io.tmpdir']}/ldes-tdb2}")
+    private String directoryPath;
+    @Value("${crawler.tdb2.retentionHours:24}")
+    private long retentionHours;
+
+    private volatile Instant lastPurge = Instant.EPOCH;
+
+    /**
+     * Remove the datasets that were not updated within the retention period (before any of them is opened).
+     */
+    @PostConstruct
+    void initialise() {
+        purgeExpired(false);
+    }
+
+    /**
+     * Create (or reopen) the dataset of a crawl.
+     *
+     * @param crawlId The crawl id.
+     * @return The dataset (all access must be transactional).
+     */
+    public Dataset create(String crawlId) {
+        if (!CRAWL_ID.matcher(crawlId).matches()) {
+            throw new IllegalArgumentException(String.format("Invalid crawl id [%s].", crawlId));
+        }
+        if (Duration.between(lastPurge, Instant.now()).toHours() >= 1) {
+            purgeExpired(true);
+        }
+        return connect(crawlId);
+    }
+
+    /**
+     * Remove the datasets that were not updated within the retention period.
+     *
+     * @param release True to first release the datasets' connections (which may have been opened since startup).
+     */
+    private synchronized void purgeExpired(boolean release) {
+        lastPurge = Instant.now();
+        var directory = Path.of(directoryPath);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        var threshold = FileTime.from(Instant.now().minus(Duration.ofHours(retentionHours)));
+        try (Stream<Path> datasets = Files.list(directory)) {
+            for (var dataset : datasets.toList()) {
+                if (lastModified(dataset).compareTo(threshold) < 0) {
+                    if (release) {
+                        try {
+                            TDBInternal.expel(DatabaseMgr.connectDatasetGraph(dataset.toString()), false);
+                        } catch (RuntimeException e) {
+                            LOG.info("Not removing expired dataset [{}], which is in use.", dataset.getFileName());
+                            continue;
+                        }
+                    }
+                    LOG.info("Removing expired dataset [{}].", dataset.getFileName());
+                    try (Stream<Path> files = Files.walk(dataset)) {
+                        for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to remove expired datasets.", e);
+        }
+    }
+
+    /**
+     * Open the dataset a handle refers to.
+     *
+     * @param handle The dataset's handle.
+     * @return The dataset (all access must be transactional).
+     */
+    public Dataset open(String handle) {
+        if (!isHandle(handle)) {
+            throw new IllegalArgumentException(String.format("Invalid dataset handle [%s].", handle));
+        }
+        var crawlId = handle.substring(HANDLE_PREFIX.length());
+        if (!Files.isDirectory(Path.of(directoryPath, crawlId))) {
+            throw new IllegalArgumentException(String.format("Dataset [%s] is not (or no longer) available.", handle));
+        }
+        return connect(crawlId);
+    }
+
+    /**
+     * Get the handle of a crawl's dataset.
+     *
+     * @param crawlId The crawl id.
+     * @return The handle.
+     */
+    public static String handleOf(String crawlId) {
+        return HANDLE_PREFIX + crawlId;
+    }
+
+    /**
+     * Check whether a value is a dataset handle.
+     *
+     * @param value The value.
+     * @return True if it is a handle.
+     */
+    public static boolean isHandle(String value) {
+        return value != null && value.startsWith(HANDLE_PREFIX) && CRAWL_ID.matcher(value.substring(HANDLE_PREFIX.length())).matches();
+    }
+
+    private Dataset connect(String crawlId) {
+        return TDB2Factory.connectDataset(Path.of(directoryPath, crawlId).toString());
+    }
+
+    private static FileTime lastModified(Path dataset) throws IOException {
+        try (Stream<Path> files = Files.walk(dataset)) {
+            return files.map(file -> {
+                try {
+                    return Files.getLastModifiedTime(file);
+                } catch (IOException e) {
+                    return FileTime.from(Instant.now());
+                }
+            }).max(Comparator.naturalOrder()).orElse(FileTime.from(Instant.EPOCH));
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package be.vlaanderen.ldes.benchmark;
+
+import be.vlaanderen.ldes.handlers.CompiledQueryCache;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the per-call cost of executing a query that only differs in a member's IRI:
+ * <ul>
+ *     <li>{@code textQuery}: the IRI is formatted into the query text, which is parsed, compiled and optimised on
+ *     every call,</li>
+ *     <li>{@code compiledQuery}: the query is compiled once ({@link CompiledQueryCache}) and the IRI is bound to its
+ *     {@code ?Member} variable per call.</li>
+ * </ul>
+ * The content holds a given number of members with a few properties each.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=CompiledQueryBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompiledQueryBenchmark {
+
+    private static final String TEXT_QUERY = """
+            PREFIX dct: <http://purl.org/dc/terms/>
+            select ?MemberValue ?Title where {
+                <%s> dct:issued ?MemberValue ;
+                    dct:title ?Title .
+            }
+            """;
+    private static final String PARAMETERISED_QUERY = """
+            PREFIX dct: <http://purl.org/dc/terms/>
+            select ?MemberValue ?Title where {
+                ?Member dct:issued ?MemberValue ;
+                    dct:title ?Title .
+            }
+            """;
+
+    @Param({"1000"})
+    public int members;
+
+    private Dataset dataset;
+    private CompiledQueryCache cache;
+    private String member;
+
+    @Setup
+    public void setUp() {
+        var model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < members; i++) {
+            model.createResource(memberUri(i))
+                    .addProperty(DCTerms.issued, String.valueOf(1900 + i))
+                    .addProperty(DCTerms.title, "Member " + i);
+        }
+        dataset = DatasetFactory.create(model);
+        cache = new CompiledQueryCache(16);
+        member = memberUri(members / 2);
+    }
+
+    @Benchmark
+    public List<String> textQuery() {
+        try (var execution = QueryExecutionFactory.create(String.format(TEXT_QUERY, member), dataset)) {
+            return values(execution.execSelect());
+        }
+    }
+
+    @Benchmark
+    public List<String> compiledQuery() {
+        var bindings = new QuerySolutionMap();
+        bindings.add("Member", dataset.getDefaultModel().createResource(member));
+        return values(cache.get(PARAMETERISED_QUERY).execute(dataset.asDatasetGraph(), bindings));
+    }
+
+    private static List<String> values(ResultSet resultSet) {
+        var values = new ArrayList<String>();
+        resultSet.forEachRemaining(entry -> values.add(entry.get("MemberValue").toString()));
+        return values;
+    }
+
+    private static String memberUri(int member) {
+        return "http://example.org/member/" + member;
+    }
+
+}
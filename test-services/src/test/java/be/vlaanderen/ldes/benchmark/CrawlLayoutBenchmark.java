@@ -0,0 +1,220 @@
+package be.vlaanderen.ldes.benchmark;
+
+import be.vlaanderen.ldes.CRAWL;
+import be.vlaanderen.ldes.handlers.CrawlIndex;
+import be.vlaanderen.ldes.handlers.CrawlLayout;
+import be.vlaanderen.ldes.handlers.PageGraphSink;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the lookups of the relation handlers on the two crawl result layouts ({@link CrawlLayout}):
+ * <ul>
+ *     <li>{@code nested*}: queries on a single graph with the pages' subjects nested under blank nodes,</li>
+ *     <li>{@code graphs*}: GRAPH queries on a named graph per page.</li>
+ * </ul>
+ * Each query is benchmarked separately: the relations of all pages, the members of a related page and the value of a
+ * member's property. The {@code *Index} benchmarks build the {@link CrawlIndex} that answers all of these lookups for
+ * a complete validation. Pages are view fragments with a single relation and twenty members.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=CrawlLayoutBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrawlLayoutBenchmark {
+
+    private static final String VIEW_URL = "http://ldes-server:8080/kbo/by-time";
+    private static final String TREE = "https://w3id.org/tree#";
+    private static final String LDES = "https://w3id.org/ldes#";
+    private static final int MEMBERS_PER_PAGE = 20;
+    private static final String NESTED_RELATIONS_QUERY = """
+            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
+            PREFIX tree: <https://w3id.org/tree#>
+            select DISTINCT ?Subject ?RelationType ?RelatedPage ?PropertyPath ?RelationValue where {
+                ?Node rdf:type tree:Node ;
+                    rdf:subject ?Subject ;
+                    tree:relation ?Relation .
+                ?Relation rdf:type ?RelationType ;
+                    tree:node ?RelatedPage ;
+                    tree:value ?RelationValue ;
+                    tree:path ?PropertyPath .
+            }
+            """;
+    private static final String NESTED_MEMBERS_QUERY = """
+            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
+            PREFIX tree: <https://w3id.org/tree#>
+            PREFIX crawler: <http://example.org/>
+            PREFIX ldes: <https://w3id.org/ldes#>
+            select DISTINCT ?PageMember where {
+                ?Page rdf:type crawler:CrawledPage ;
+                    crawler:has_contents ?PageContent .
+                ?PageContent rdf:type ldes:EventStream ;
+                    tree:member ?PageMember .
+                FILTER (STR(?Page) = "%s")
+            }
+            """;
+    private static final String NESTED_MEMBER_VALUE_QUERY = """
+            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
+            select ?MemberValue where {
+                ?Member rdf:subject ?MemberSubject ;
+                    <%s> ?MemberValue .
+                FILTER(?MemberSubject = <%s>)
+            }
+            """;
+    private static final String GRAPHS_RELATIONS_QUERY = """
+            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
+            PREFIX tree: <https://w3id.org/tree#>
+            select DISTINCT ?Subject ?RelationType ?RelatedPage ?PropertyPath ?RelationValue where {
+                GRAPH ?Page {
+                    ?Subject rdf:type tree:Node ;
+                        tree:relation ?Relation .
+                    ?Relation rdf:type ?RelationType ;
+                        tree:node ?RelatedPage ;
+                        tree:value ?RelationValue ;
+                        tree:path ?PropertyPath .
+                }
+            }
+            """;
+    private static final String GRAPHS_MEMBERS_QUERY = """
+            PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>
+            PREFIX tree: <https://w3id.org/tree#>
+            PREFIX ldes: <https://w3id.org/ldes#>
+            select DISTINCT ?PageMember where {
+                GRAPH <%s> {
+                    ?EventStream rdf:type ldes:EventStream ;
+                        tree:member ?PageMember .
+                }
+            }
+            """;
+    private static final String GRAPHS_MEMBER_VALUE_QUERY = """
+            select ?MemberValue where {
+                GRAPH ?Page {
+                    <%s> <%s> ?MemberValue .
+                }
+            }
+            """;
+
+    @Param({"10", "100"})
+    public int pages;
+
+    private Model nested;
+    private Dataset nestedDataset;
+    private Dataset graphs;
+    private String relatedPage;
+    private String member;
+
+    @Setup
+    public void setUp() {
+        nested = ModelFactory.createDefaultModel();
+        graphs = DatasetFactory.create();
+        var metadata = graphs.getNamedModel(CrawlLayout.METADATA_GRAPH);
+        for (int page = 0; page < pages; page++) {
+            var url = pageUrl(page);
+            var content = page(page);
+            var pageNode = NodeFactory.createURI(url);
+            StreamRDFOps.sendGraphToStream(content.getGraph(), new PageGraphSink(nested.getGraph(), pageNode));
+            nested.add(nested.createResource(url), RDF.type, CRAWL.CrawledPage);
+            graphs.addNamedModel(url, content);
+            metadata.add(metadata.createResource(url), RDF.type, CRAWL.CrawledPage);
+        }
+        nestedDataset = DatasetFactory.create(nested);
+        relatedPage = pageUrl(pages / 2);
+        member = memberUri(pages / 2, 0);
+    }
+
+    @Benchmark
+    public List<String> nestedRelations() {
+        return select(NESTED_RELATIONS_QUERY, nestedDataset, "RelatedPage");
+    }
+
+    @Benchmark
+    public List<String> graphsRelations() {
+        return select(GRAPHS_RELATIONS_QUERY, graphs, "RelatedPage");
+    }
+
+    @Benchmark
+    public List<String> nestedMembers() {
+        return select(String.format(NESTED_MEMBERS_QUERY, relatedPage), nestedDataset, "PageMember");
+    }
+
+    @Benchmark
+    public List<String> graphsMembers() {
+        return select(String.format(GRAPHS_MEMBERS_QUERY, relatedPage), graphs, "PageMember");
+    }
+
+    @Benchmark
+    public List<String> nestedMemberValue() {
+        return select(String.format(NESTED_MEMBER_VALUE_QUERY, DCTerms.issued.getURI(), member), nestedDataset, "MemberValue");
+    }
+
+    @Benchmark
+    public List<String> graphsMemberValue() {
+        return select(String.format(GRAPHS_MEMBER_VALUE_QUERY, member, DCTerms.issued.getURI()), graphs, "MemberValue");
+    }
+
+    @Benchmark
+    public CrawlIndex nestedIndex() {
+        return CrawlIndex.build(nestedDataset, CrawlLayout.NESTED);
+    }
+
+    @Benchmark
+    public CrawlIndex graphsIndex() {
+        return CrawlIndex.build(graphs, CrawlLayout.GRAPHS);
+    }
+
+    private static List<String> select(String query, Dataset dataset, String variable) {
+        var values = new ArrayList<String>();
+        try (var execution = QueryExecutionFactory.create(query, dataset)) {
+            execution.execSelect().forEachRemaining(entry -> values.add(entry.get(variable).toString()));
+        }
+        return values;
+    }
+
+    private static String pageUrl(int page) {
+        return page == 0 ? VIEW_URL : VIEW_URL + "?page=" + page;
+    }
+
+    private static String memberUri(int page, int member) {
+        return "http://example.org/member/" + page + "/" + member;
+    }
+
+    /**
+     * Create a fragment relating to the next page and holding its own members.
+     */
+    private Model page(int page) {
+        var model = ModelFactory.createDefaultModel();
+        var view = model.createResource(pageUrl(page))
+                .addProperty(RDF.type, model.createResource(TREE + "Node"));
+        view.addProperty(model.createProperty(TREE, "relation"), model.createResource()
+                .addProperty(RDF.type, model.createResource(TREE + "GreaterThanOrEqualToRelation"))
+                .addProperty(model.createProperty(TREE, "path"), DCTerms.issued)
+                .addProperty(model.createProperty(TREE, "value"), String.valueOf(1900 + page + 1))
+                .addProperty(model.createProperty(TREE, "node"), model.createResource(pageUrl(page + 1))));
+        var stream = model.createResource(VIEW_URL + "#stream")
+                .addProperty(RDF.type, model.createResource(LDES + "EventStream"));
+        for (int i = 0; i < MEMBERS_PER_PAGE; i++) {
+            var memberResource = model.createResource(memberUri(page, i))
+                    .addProperty(DCTerms.issued, String.valueOf(1900 + page))
+                    .addProperty(DCTerms.title, "Member " + i);
+            stream.addProperty(model.createProperty(TREE, "member"), memberResource);
+        }
+        return model;
+    }
+
+}
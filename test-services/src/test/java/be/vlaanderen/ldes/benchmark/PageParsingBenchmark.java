@@ -0,0 +1,65 @@
+package be.vlaanderen.ldes.benchmark;
+
+import be.vlaanderen.ldes.handlers.PageGraphSink;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the pages per second the crawler can parse for each RDF format it accepts.
+ * <p>
+ * The same page (the bundled by-time crawl result) is serialised in each format and parsed through the crawler's
+ * {@link PageGraphSink}, so the scores (operations per second) are directly comparable pages per second.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=PageParsingBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageParsingBenchmark {
+
+    private static final String PAGE_URL = "http://ldes-server:8080/kbo/by-time";
+
+    @Param({"text/turtle", "application/n-triples", "application/n-quads", "application/ld+json", "application/rdf+thrift", "application/rdf+protobuf"})
+    public String contentType;
+
+    private Lang lang;
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        var source = RDFDataMgr.loadModel("data/items_timebased.ttl");
+        lang = RDFLanguages.contentTypeToLang(contentType);
+        var output = new ByteArrayOutputStream();
+        if (RDFLanguages.isQuads(lang)) {
+            RDFDataMgr.write(output, DatasetFactory.wrap(source), lang);
+        } else {
+            RDFDataMgr.write(output, source, lang);
+        }
+        page = output.toByteArray();
+    }
+
+    @Benchmark
+    public Graph parsePage() {
+        Graph graph = Factory.createDefaultGraph();
+        RDFParser.source(new ByteArrayInputStream(page))
+                .base(PAGE_URL)
+                .lang(lang)
+                .parse(new PageGraphSink(graph, NodeFactory.createURI(PAGE_URL)));
+        return graph;
+    }
+
+}
@@ -0,0 +1,129 @@
+package be.vlaanderen.ldes.benchmark;
+
+import be.vlaanderen.ldes.handlers.PageGraphSink;
+import be.vlaanderen.ldes.handlers.TreeRelations;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the ways of extracting the TREE relations (the pages to follow) of a crawled page.
+ * <ul>
+ *     <li>{@code sparql}: the SPARQL query the crawler used to run on every parsed page,</li>
+ *     <li>{@code graphFind}: lookups of tree:Node subjects, then their tree:relation and tree:node objects, on the
+ *     parsed graph's indexes,</li>
+ *     <li>{@code parse} and {@code parseWithStreamCapture}: parsing the page without and with the relations captured
+ *     by the crawler's {@link PageGraphSink}, the difference being the cost of the capture.</li>
+ * </ul>
+ * Pages are small fragments (twenty relations) with a varying number of members.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=RelationExtractionBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelationExtractionBenchmark {
+
+    private static final String PAGE_URL = "http://ldes-server:8080/kbo/by-time";
+    private static final String TREE = TreeRelations.NS;
+    private static final String RELATIONS_QUERY = """
+            PREFIX tree: <https://w3id.org/tree#>
+            SELECT DISTINCT ?relation
+            WHERE {
+                ?node a tree:Node .
+                ?node tree:relation/tree:node ?relation.
+            }
+            """;
+
+    @Param({"1", "100"})
+    public int members;
+
+    private Model model;
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        model = ModelFactory.createDefaultModel();
+        var view = model.createResource(PAGE_URL)
+                .addProperty(RDF.type, model.createResource(TREE + "Node"));
+        for (int i = 0; i < 20; i++) {
+            view.addProperty(model.createProperty(TREE, "relation"), model.createResource()
+                    .addProperty(RDF.type, model.createResource(TREE + "GreaterThanOrEqualToRelation"))
+                    .addProperty(model.createProperty(TREE, "path"), DCTerms.issued)
+                    .addProperty(model.createProperty(TREE, "value"), String.valueOf(1900 + i))
+                    .addProperty(model.createProperty(TREE, "node"), model.createResource(PAGE_URL + "?year=" + (1900 + i))));
+        }
+        for (int i = 0; i < members; i++) {
+            model.createResource("http://example.org/member/" + i)
+                    .addProperty(RDF.type, model.createResource("http://www.w3.org/ns/legal#legalEntity"))
+                    .addProperty(DCTerms.issued, String.valueOf(1900 + i % 20))
+                    .addProperty(DCTerms.title, "Member " + i);
+        }
+        var output = new ByteArrayOutputStream();
+        RDFDataMgr.write(output, model, Lang.TURTLE);
+        page = output.toByteArray();
+    }
+
+    @Benchmark
+    public List<String> sparql() {
+        List<String> relations = new ArrayList<>();
+        try (var execution = QueryExecutionFactory.create(QueryFactory.create(RELATIONS_QUERY), model)) {
+            var results = execution.execSelect();
+            while (results.hasNext()) {
+                relations.add(results.nextSolution().getResource("relation").getURI());
+            }
+        }
+        return relations;
+    }
+
+    @Benchmark
+    public List<String> graphFind() {
+        var graph = model.getGraph();
+        var relations = new LinkedHashSet<String>();
+        graph.find(Node.ANY, RDF.Nodes.type, TreeRelations.NODE_TYPE).forEachRemaining(nodeTriple ->
+                graph.find(nodeTriple.getSubject(), TreeRelations.RELATION, Node.ANY).forEachRemaining(relationTriple ->
+                        graph.find(relationTriple.getObject(), TreeRelations.NODE, Node.ANY).forEachRemaining(targetTriple -> {
+                            if (targetTriple.getObject().isURI()) {
+                                relations.add(targetTriple.getObject().getURI());
+                            }
+                        })));
+        return new ArrayList<>(relations);
+    }
+
+    @Benchmark
+    public Graph parse() {
+        Graph graph = Factory.createDefaultGraph();
+        RDFParser.source(new ByteArrayInputStream(page)).base(PAGE_URL).lang(Lang.TURTLE).parse(StreamRDFLib.graph(graph));
+        return graph;
+    }
+
+    @Benchmark
+    public List<String> parseWithStreamCapture() {
+        var sink = new PageGraphSink(Factory.createDefaultGraph(), NodeFactory.createURI(PAGE_URL));
+        RDFParser.source(new ByteArrayInputStream(page)).base(PAGE_URL).lang(Lang.TURTLE).parse(sink);
+        return sink.getRelations();
+    }
+
+}
@@ -0,0 +1,116 @@
+package be.vlaanderen.ldes.benchmark;
+
+import be.vlaanderen.ldes.handlers.TimestampColumn;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.StringUtils;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the ways of checking the members of a page against its time-based relations.
+ * <ul>
+ *     <li>{@code perComparison}: the former checks, converting each member value to an {@link OffsetDateTime} (with a
+ *     new formatter) for every comparison of every relation,</li>
+ *     <li>{@code column}: decoding the member values once into a {@link TimestampColumn} and answering each relation
+ *     with a binary search,</li>
+ *     <li>{@code columnRanges}: the relations' binary searches and member checks on an already decoded column.</li>
+ * </ul>
+ * The page holds one xsd:dateTime value per member and is checked against ten greater than or equal to relations.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=TimestampRelationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampRelationBenchmark {
+
+    private static final String DATE_TIME = "^^http://www.w3.org/2001/XMLSchema#dateTime";
+    private static final int RELATIONS = 10;
+
+    @Param({"100", "10000"})
+    public int members;
+
+    private List<String> memberSubjects;
+    private Map<String, List<String>> values;
+    private List<String> relationValues;
+    private TimestampColumn decoded;
+
+    @Setup
+    public void setUp() {
+        memberSubjects = new ArrayList<>();
+        values = new HashMap<>();
+        var start = OffsetDateTime.parse("2023-01-01T00:00:00.000000+01:00");
+        var formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSXXXXX");
+        for (int i = 0; i < members; i++) {
+            var member = "http://example.org/member/" + i;
+            memberSubjects.add(member);
+            values.put(member, List.of(start.plusMinutes((i * 7919L) % members).format(formatter) + DATE_TIME));
+        }
+        relationValues = new ArrayList<>();
+        for (int i = 0; i < RELATIONS; i++) {
+            relationValues.add(start.plusMinutes((long) members * i / RELATIONS).format(formatter) + DATE_TIME);
+        }
+        decoded = TimestampColumn.of(memberSubjects, values::get);
+    }
+
+    @Benchmark
+    public int perComparison() {
+        int valid = 0;
+        for (var relationValue : relationValues) {
+            var relationDate = toDate(relationValue);
+            for (var member : memberSubjects) {
+                var validValues = new ArrayList<String>();
+                for (var memberValue : values.get(member)) {
+                    if (relationDate.isAfter(toDate(memberValue)) || relationDate.isEqual(toDate(memberValue))) {
+                        validValues.add(memberValue);
+                    }
+                }
+                if (!validValues.isEmpty()) {
+                    valid++;
+                }
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int column() {
+        return check(TimestampColumn.of(memberSubjects, values::get));
+    }
+
+    @Benchmark
+    public int columnRanges() {
+        return check(decoded);
+    }
+
+    private int check(TimestampColumn column) {
+        int valid = 0;
+        for (var relationValue : relationValues) {
+            var to = column.upperBound(TimestampColumn.decode(relationValue));
+            for (int i = 0; i < memberSubjects.size(); i++) {
+                if (!column.valuesWithin(i, 0, to).isEmpty()) {
+                    valid++;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * The former conversion of a member value.
+     */
+    private static OffsetDateTime toDate(String propertyValue) {
+        var parts = StringUtils.split(propertyValue, "^^");
+        return OffsetDateTime.parse(parts[0], DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSXXXXX"));
+    }
+
+}
@@ -0,0 +1,191 @@
+package be.vlaanderen.ldes.gitb;
+
+import com.gitb.core.LogLevel;
+import com.gitb.vs.LogRequest;
+import com.gitb.vs.ValidationClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the asynchronous shipping of test session log messages.
+ */
+public class TestBedLogShipperTest {
+
+    /** The posted log requests. */
+    private final List<LogRequest> posted = Collections.synchronizedList(new ArrayList<>());
+    /** Counted down once the first log request is being posted. */
+    private final CountDownLatch posting = new CountDownLatch(1);
+    /** Releases the first log request. */
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TestBedLogShipper shipper;
+
+    /**
+     * Release the worker (if blocked) and stop it.
+     */
+    @AfterEach
+    public void stop() {
+        release.countDown();
+        if (shipper != null) {
+            shipper.shutdown();
+        }
+    }
+
+    /**
+     * Test that only messages at or above the configured level are enabled.
+     */
+    @Test
+    public void enablesConfiguredLevels() {
+        shipper = shipper(LogLevel.INFO, 10, 30);
+        assertFalse(shipper.isEnabled(LogLevel.DEBUG));
+        assertTrue(shipper.isEnabled(LogLevel.INFO));
+        assertTrue(shipper.isEnabled(LogLevel.WARNING));
+        assertTrue(shipper.isEnabled(LogLevel.ERROR));
+    }
+
+    /**
+     * Test that the messages of each test session are shipped in the order they were submitted.
+     */
+    @Test
+    public void shipsMessagesInOrderPerSession() {
+        shipper = shipper(LogLevel.DEBUG, 1000, 30);
+        for (int i = 0; i < 200; i++) {
+            shipper.submit(i % 2 == 0 ? "a" : "b", () -> this::record, LogLevel.INFO, String.valueOf(i / 2));
+        }
+        shipper.flush("a");
+        shipper.flush("b");
+        var expected = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, messages("a"));
+        assertEquals(expected, messages("b"));
+    }
+
+    /**
+     * Test that consecutive queued messages of the same test session and level are shipped as one log entry.
+     */
+    @Test
+    public void mergesConsecutiveMessages() throws InterruptedException {
+        shipper = shipper(LogLevel.DEBUG, 100, 30);
+        blockWorker("a");
+        shipper.submit("a", () -> this::record, LogLevel.INFO, "1");
+        shipper.submit("a", () -> this::record, LogLevel.INFO, "2");
+        shipper.submit("a", () -> this::record, LogLevel.WARNING, "3");
+        shipper.submit("b", () -> this::record, LogLevel.WARNING, "4");
+        shipper.submit("a", () -> this::record, LogLevel.WARNING, "5");
+        release.countDown();
+        shipper.flush("a");
+        shipper.flush("b");
+        assertEquals(List.of("a INFO 0", "a INFO 1\n2", "a WARNING 3", "b WARNING 4", "a WARNING 5"), posted.stream().map(request -> request.getSessionId() + " " + request.getLevel() + " " + request.getMessage()).toList());
+    }
+
+    /**
+     * Test that messages submitted while the queue is full are dropped, and that their number is shipped as a warning
+     * when the session is flushed.
+     */
+    @Test
+    public void reportsDroppedMessagesOnFlush() throws InterruptedException {
+        shipper = shipper(LogLevel.DEBUG, 2, 30);
+        blockWorker("a");
+        for (int i = 1; i <= 5; i++) {
+            shipper.submit("a", () -> this::record, LogLevel.INFO, String.valueOf(i));
+        }
+        release.countDown();
+        shipper.flush("a");
+        assertEquals(List.of("0", "1\n2", "[3] log message(s) were dropped as the log queue was full."), posted.stream().map(LogRequest::getMessage).toList());
+        assertEquals(LogLevel.WARNING, posted.get(2).getLevel());
+        // The count is only reported once.
+        shipper.flush("a");
+        assertEquals(3, posted.size());
+    }
+
+    /**
+     * Test that a flush waits until the session's messages are shipped, and returns once none are pending.
+     */
+    @Test
+    public void flushWaitsForPendingMessages() throws Exception {
+        shipper = shipper(LogLevel.DEBUG, 100, 30);
+        blockWorker("a");
+        shipper.submit("a", () -> this::record, LogLevel.INFO, "1");
+        var flush = CompletableFuture.runAsync(() -> shipper.flush("a"));
+        assertThrows(TimeoutException.class, () -> flush.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("0", "1"), messages("a"));
+        // Flushing a session without messages returns right away.
+        shipper.flush("unknown");
+        shipper.flush(null);
+    }
+
+    /**
+     * Test that a flush gives up once its timeout elapses.
+     */
+    @Test
+    public void flushTimesOut() throws InterruptedException {
+        shipper = shipper(LogLevel.DEBUG, 100, 1);
+        blockWorker("a");
+        shipper.submit("a", () -> this::record, LogLevel.INFO, "1");
+        var start = System.nanoTime();
+        shipper.flush("a");
+        var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 900 && elapsed < 10_000, String.valueOf(elapsed));
+        assertEquals(1, posted.size());
+    }
+
+    private TestBedLogShipper shipper(LogLevel level, int queueSize, long flushTimeoutSeconds) {
+        var shipper = new TestBedLogShipper();
+        ReflectionTestUtils.setField(shipper, "level", level);
+        ReflectionTestUtils.setField(shipper, "queueSize", queueSize);
+        ReflectionTestUtils.setField(shipper, "batchSize", 50);
+        ReflectionTestUtils.setField(shipper, "flushTimeoutSeconds", flushTimeoutSeconds);
+        shipper.initialise();
+        return shipper;
+    }
+
+    /**
+     * Submit a message "0" whose shipping blocks the worker until released, so that the following messages are queued.
+     */
+    private void blockWorker(String sessionId) throws InterruptedException {
+        ValidationClient client = request -> {
+            record(request);
+            posting.countDown();
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        };
+        shipper.submit(sessionId, () -> client, LogLevel.INFO, "0");
+        assertTrue(posting.await(10, TimeUnit.SECONDS));
+    }
+
+    private com.gitb.vs.Void record(LogRequest request) {
+        posted.add(request);
+        return null;
+    }
+
+    /**
+     * Get the shipped messages of a test session, one per submitted message.
+     */
+    private List<String> messages(String sessionId) {
+        synchronized (posted) {
+            return posted.stream()
+                    .filter(request -> request.getSessionId().equals(sessionId))
+                    .flatMap(request -> List.of(request.getMessage().split("\n")).stream())
+                    .toList();
+        }
+    }
+
+}
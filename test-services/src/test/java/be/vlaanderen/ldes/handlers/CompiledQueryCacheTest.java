@@ -0,0 +1,85 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the execution of compiled queries within limits.
+ */
+public class CompiledQueryCacheTest {
+
+    private static final String SELECT_ALL = "SELECT * WHERE { ?s ?p ?o }";
+
+    /**
+     * Test that queries without limits return all rows.
+     */
+    @Test
+    public void returnsAllRowsWithoutLimits() {
+        var dataset = dataset(20);
+        assertEquals(20, count(new CompiledQueryCache(8).get(SELECT_ALL).execute(dataset, new QuerySolutionMap(), 0, 0)));
+    }
+
+    /**
+     * Test that a query may return up to the maximum number of rows, and fails when it returns more.
+     */
+    @Test
+    public void failsBeyondMaxRows() {
+        var dataset = dataset(20);
+        var query = new CompiledQueryCache(8).get(SELECT_ALL);
+        assertEquals(20, count(query.execute(dataset, new QuerySolutionMap(), 0, 20)));
+        var results = query.execute(dataset, new QuerySolutionMap(), 0, 5);
+        var exception = assertThrows(QueryLimitException.class, () -> count(results));
+        assertTrue(exception.getMessage().contains("[5]"));
+    }
+
+    /**
+     * Test that a query still running when its timeout elapses is cancelled.
+     */
+    @Test
+    public void cancelsAfterTimeout() {
+        // The cross product has 8 million rows, which takes far longer to read than the timeout.
+        var dataset = dataset(200);
+        var query = new CompiledQueryCache(8).get("SELECT * WHERE { ?a ?p ?x . ?b ?q ?y . ?c ?r ?z }");
+        var results = query.execute(dataset, new QuerySolutionMap(), 50, 0);
+        var exception = assertThrows(QueryLimitException.class, () -> count(results));
+        assertTrue(exception.getMessage().contains("[50] ms"));
+    }
+
+    /**
+     * Test that a query completing within its timeout returns all rows.
+     */
+    @Test
+    public void completesWithinTimeout() {
+        var dataset = dataset(20);
+        assertEquals(20, count(new CompiledQueryCache(8).get(SELECT_ALL).execute(dataset, new QuerySolutionMap(), 60_000, 100)));
+    }
+
+    private static int count(ResultSet results) {
+        var rows = 0;
+        while (results.hasNext()) {
+            results.next();
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Create a dataset with a number of triples in its default graph.
+     */
+    private static DatasetGraph dataset(int triples) {
+        var model = ModelFactory.createDefaultModel();
+        var property = ResourceFactory.createProperty("http://example.org/p");
+        for (int i = 0; i < triples; i++) {
+            model.add(ResourceFactory.createResource("http://example.org/s" + i), property, ResourceFactory.createTypedLiteral(i));
+        }
+        return DatasetGraphFactory.wrap(model.getGraph());
+    }
+
+}
@@ -0,0 +1,152 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.handlers.ConcurrencyController.Decision;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the adaptive crawl concurrency.
+ */
+public class ConcurrencyControllerTest {
+
+    private static final Duration FAST = Duration.ofMillis(5);
+    private static final Duration SLOW = Duration.ofMillis(50);
+
+    /**
+     * Test that the limit starts at half the maximum and increases by one per round of fast responses, up to the
+     * maximum.
+     */
+    @Test
+    public void increasesPerRound() {
+        var controller = new ConcurrencyController(8, Duration.ofMillis(10), 20);
+        assertEquals(4, controller.limit());
+        // A round is the current limit's number of responses (and at least five).
+        var limits = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            controller.onResponse(FAST, 200, Optional.empty());
+            limits.append(controller.limit());
+        }
+        assertEquals("4444555556666667777777888888888888888888", limits.toString());
+        assertEquals(List.of(5, 6, 7, 8), controller.getDecisions().stream().map(Decision::limit).toList());
+        assertTrue(controller.getDecisions().stream().allMatch(decision -> decision.action().equals("increase") && decision.reason().equals("p95 latency 5ms")));
+        assertEquals(4, controller.getStatistics().increases());
+        assertEquals(0, controller.pauseMillis());
+    }
+
+    /**
+     * Test that the limit is halved once the 95th percentile latency of a round exceeds the target, and that latencies
+     * observed before a decrease are not counted afterwards.
+     */
+    @Test
+    public void decreasesOnSlowResponses() {
+        var controller = new ConcurrencyController(8, Duration.ofMillis(10), 20);
+        for (int i = 0; i < 4; i++) {
+            controller.onResponse(FAST, 200, Optional.empty());
+        }
+        // The 95th percentile of a round of five responses is its slowest one.
+        controller.onResponse(SLOW, 200, Optional.empty());
+        assertEquals(2, controller.limit());
+        assertEquals(new Decision(0, "decrease", 2, "p95 latency 50ms"), withoutTime(controller.getDecisions().get(0)));
+        for (int i = 0; i < 5; i++) {
+            controller.onResponse(FAST, 200, Optional.empty());
+        }
+        assertEquals(3, controller.limit());
+        assertEquals("increase", controller.getDecisions().get(1).action());
+        assertEquals(5, controller.getStatistics().p95LatencyMillis());
+        assertEquals(1, controller.getStatistics().decreases());
+    }
+
+    /**
+     * Test that throttled responses halve the limit, but not again for the responses to requests sent before the
+     * decrease (within one latency target).
+     */
+    @Test
+    public void decreasesOnceOnThrottling() {
+        var controller = new ConcurrencyController(8, Duration.ofHours(1), 20);
+        controller.onResponse(FAST, 429, Optional.empty());
+        assertEquals(2, controller.limit());
+        controller.onResponse(FAST, 503, Optional.empty());
+        controller.onResponse(FAST, 429, Optional.empty());
+        assertEquals(2, controller.limit());
+        assertEquals(List.of(new Decision(0, "decrease", 2, "status 429")), controller.getDecisions().stream().map(ConcurrencyControllerTest::withoutTime).toList());
+        assertEquals(3, controller.getStatistics().throttledResponses());
+        assertEquals(1, controller.getStatistics().decreases());
+        assertEquals(0, controller.pauseMillis());
+    }
+
+    /**
+     * Test that throttling keeps the limit at one rather than stopping the crawl, and that the limit increases again
+     * from there.
+     */
+    @Test
+    public void staysAtOneWhenThrottled() throws InterruptedException {
+        var controller = new ConcurrencyController(4, Duration.ofMillis(1), 20);
+        assertEquals(2, controller.limit());
+        var limits = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            controller.onResponse(FAST, 503, Optional.empty());
+            limits.append(controller.limit());
+            Thread.sleep(5);
+        }
+        assertEquals("111", limits.toString());
+        assertEquals(1, controller.getDecisions().size());
+        assertEquals(3, controller.getStatistics().throttledResponses());
+        for (int i = 0; i < 5; i++) {
+            controller.onResponse(Duration.ofNanos(100), 200, Optional.empty());
+        }
+        assertEquals(2, controller.limit());
+    }
+
+    /**
+     * Test that a Retry-After delay pauses new requests, a shorter delay not shortening the pause.
+     */
+    @Test
+    public void pausesOnRetryAfter() {
+        var controller = new ConcurrencyController(8, Duration.ofHours(1), 20);
+        controller.onResponse(FAST, 503, Optional.of(Duration.ofSeconds(30)));
+        var pause = controller.pauseMillis();
+        assertTrue(pause > 29_000 && pause <= 30_000, String.valueOf(pause));
+        assertEquals("status 503, retry after 30s", controller.getDecisions().get(0).reason());
+        controller.onResponse(FAST, 429, Optional.of(Duration.ofSeconds(10)));
+        assertTrue(controller.pauseMillis() > 20_000);
+        var paused = controller.getStatistics().pausedMillis();
+        assertTrue(paused > 29_000 && paused <= 30_000, String.valueOf(paused));
+        assertEquals(2, controller.limit());
+    }
+
+    /**
+     * Test the parsing of Retry-After headers as a number of seconds or an HTTP date.
+     */
+    @Test
+    public void parsesRetryAfter() {
+        assertEquals(Optional.of(Duration.ofSeconds(120)), ConcurrencyController.retryAfter(headers("120")));
+        var date = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(120).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        var delay = ConcurrencyController.retryAfter(headers(date)).orElseThrow();
+        assertTrue(delay.toSeconds() >= 115 && delay.toSeconds() <= 120, String.valueOf(delay));
+        assertEquals(Optional.of(Duration.ZERO), ConcurrencyController.retryAfter(headers("Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(Optional.empty(), ConcurrencyController.retryAfter(headers("later")));
+        assertEquals(Optional.empty(), ConcurrencyController.retryAfter(HttpHeaders.of(Map.of(), (name, value) -> true)));
+    }
+
+    private static HttpHeaders headers(String retryAfter) {
+        return HttpHeaders.of(Map.of("Retry-After", List.of(retryAfter)), (name, value) -> true);
+    }
+
+    /**
+     * Drop the elapsed time of a decision, which depends on the test's timing.
+     */
+    private static Decision withoutTime(Decision decision) {
+        return new Decision(0, decision.action(), decision.limit(), decision.reason());
+    }
+
+}
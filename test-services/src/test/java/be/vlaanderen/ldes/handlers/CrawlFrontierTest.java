@@ -0,0 +1,120 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the crawl frontier.
+ */
+public class CrawlFrontierTest {
+
+    /**
+     * Test that equivalent URLs are only scheduled once.
+     */
+    @Test
+    public void schedulesEquivalentUrlsOnce() {
+        try (var frontier = new CrawlFrontier(10)) {
+            assertTrue(frontier.offer("http://ldes-server:8080/kbo/by-name?prefix=a"));
+            assertFalse(frontier.offer("HTTP://LDES-SERVER:8080/kbo/by-name?prefix=a#member"));
+            assertFalse(frontier.offer("http://ldes-server:8080/kbo/./by-name?prefix=a"));
+            assertTrue(frontier.offer("http://ldes-server:8080/kbo/by-name?prefix=b"));
+            assertEquals(2, frontier.scheduledCount());
+        }
+    }
+
+    /**
+     * Test that many distinct URLs are all scheduled once, also after the fingerprint set has grown.
+     */
+    @Test
+    public void schedulesManyUrlsOnce() {
+        try (var frontier = new CrawlFrontier(100)) {
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(frontier.offer("http://ldes-server:8080/kbo/by-time?page=" + i));
+            }
+            for (int i = 0; i < 5000; i++) {
+                assertFalse(frontier.offer("http://LDES-SERVER:8080/kbo/by-time?page=" + i));
+            }
+            assertEquals(5000, frontier.scheduledCount());
+            assertEquals(5000, frontier.pendingCount());
+        }
+    }
+
+    /**
+     * Test that spilled URLs are returned in scheduling order.
+     */
+    @Test
+    public void returnsSpilledUrlsInOrder() {
+        try (var frontier = new CrawlFrontier(3)) {
+            var expected = new ArrayList<String>();
+            for (int i = 0; i < 20; i++) {
+                expected.add("http://ldes-server:8080/kbo/by-time?page=" + i);
+                frontier.offer(expected.get(i));
+            }
+            assertEquals(20, frontier.pendingCount());
+            var actual = new ArrayList<String>();
+            String url;
+            while ((url = frontier.poll()) != null) {
+                actual.add(url);
+            }
+            assertEquals(expected, actual);
+            assertTrue(frontier.isEmpty());
+        }
+    }
+
+    /**
+     * Test that a saved frontier is restored with its in-flight, pending (including spilled) and scheduled URLs.
+     */
+    @Test
+    public void restoresSavedState(@TempDir Path directory) throws IOException {
+        var pendingFile = directory.resolve("frontier.txt");
+        var scheduledFile = directory.resolve("scheduled.bin");
+        try (var frontier = new CrawlFrontier(3)) {
+            for (int i = 0; i < 10; i++) {
+                frontier.offer("http://ldes-server:8080/kbo/by-time?page=" + i);
+            }
+            frontier.poll();
+            var inFlight = frontier.poll();
+            frontier.save(pendingFile, scheduledFile, List.of(inFlight));
+        }
+        try (var frontier = new CrawlFrontier(3)) {
+            frontier.offer("http://ldes-server:8080/kbo/by-time?page=0");
+            frontier.load(pendingFile, scheduledFile);
+            assertEquals(9, frontier.pendingCount());
+            assertFalse(frontier.offer("http://ldes-server:8080/kbo/by-time?page=0"));
+            assertTrue(frontier.offer("http://ldes-server:8080/kbo/by-time?page=10"));
+            assertEquals("http://ldes-server:8080/kbo/by-time?page=1", frontier.poll());
+            assertEquals("http://ldes-server:8080/kbo/by-time?page=2", frontier.poll());
+        }
+    }
+
+    /**
+     * Test that loading a saved frontier replaces (rather than merges with) the current state.
+     */
+    @Test
+    public void loadReplacesCurrentState(@TempDir Path directory) throws IOException {
+        var pendingFile = directory.resolve("frontier.txt");
+        var scheduledFile = directory.resolve("scheduled.bin");
+        try (var frontier = new CrawlFrontier(3)) {
+            frontier.offer("http://ldes-server:8080/kbo/by-time?page=0");
+            frontier.save(pendingFile, scheduledFile, List.of());
+        }
+        try (var frontier = new CrawlFrontier(3)) {
+            for (int i = 1; i < 10; i++) {
+                frontier.offer("http://ldes-server:8080/kbo/by-name?page=" + i);
+            }
+            frontier.load(pendingFile, scheduledFile);
+            assertEquals(1, frontier.pendingCount());
+            assertEquals(1, frontier.scheduledCount());
+            assertTrue(frontier.offer("http://ldes-server:8080/kbo/by-name?page=1"));
+            assertEquals("http://ldes-server:8080/kbo/by-time?page=0", frontier.poll());
+        }
+    }
+
+}
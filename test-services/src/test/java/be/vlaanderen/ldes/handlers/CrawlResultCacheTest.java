@@ -0,0 +1,167 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.handlers.CrawlResultCache.CrawlResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the cache of crawl results.
+ */
+public class CrawlResultCacheTest {
+
+    private static final String VIEW = "http://ldes-server:8080/kbo/by-time";
+
+    /**
+     * Test that concurrent requests for the same view are merged into a single crawl, reporting the id of that crawl.
+     */
+    @Test
+    public void mergesConcurrentCrawls() throws Exception {
+        var cache = cache(300);
+        var crawls = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Supplier<String> crawl = () -> {
+            crawls.incrementAndGet();
+            started.countDown();
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "result";
+        };
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var first = executor.submit(() -> cache.get(VIEW, "first", crawl));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            var waiting = new AtomicReference<Thread>();
+            var second = executor.submit(() -> {
+                waiting.set(Thread.currentThread());
+                return cache.get(VIEW, "second", crawl);
+            });
+            // Only complete the first crawl once the second request waits for it.
+            while (waiting.get() == null || waiting.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            assertEquals(new CrawlResult("result", "first"), first.get(10, TimeUnit.SECONDS));
+            assertEquals(new CrawlResult("result", "first"), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, crawls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a failed crawl is reported to the requests waiting for it and is not cached.
+     */
+    @Test
+    public void reportsFailedCrawls() throws Exception {
+        var cache = cache(300);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var first = executor.submit(() -> cache.get(VIEW, "first", () -> {
+                started.countDown();
+                try {
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalStateException("Crawl failed.");
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            var waiting = new AtomicReference<Thread>();
+            var second = executor.submit(() -> {
+                waiting.set(Thread.currentThread());
+                return cache.get(VIEW, "second", () -> "unexpected");
+            });
+            while (waiting.get() == null || waiting.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (var future : List.of(first, second)) {
+                var exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+                assertEquals("Crawl failed.", exception.getCause().getMessage());
+            }
+            assertEquals(new CrawlResult("retried", "third"), cache.get(VIEW, "third", () -> "retried"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that cached results are reused with the id of the crawl that produced them, and that results are cached
+     * per variant.
+     */
+    @Test
+    public void reusesCachedResults() {
+        var cache = cache(300);
+        var crawls = new AtomicInteger();
+        assertEquals(new CrawlResult("1", "first"), cache.get(VIEW, "first", () -> String.valueOf(crawls.incrementAndGet())));
+        assertEquals(new CrawlResult("1", "first"), cache.get(VIEW, "second", () -> String.valueOf(crawls.incrementAndGet())));
+        assertEquals(new CrawlResult("2", "third"), cache.get(VIEW, "graphs", "third", () -> String.valueOf(crawls.incrementAndGet())));
+        assertEquals(2, crawls.get());
+    }
+
+    /**
+     * Test that results are crawled again once their time to live elapsed.
+     */
+    @Test
+    public void expiresResults() throws InterruptedException {
+        var cache = cache(0);
+        assertEquals(new CrawlResult("old", "first"), cache.get(VIEW, "first", () -> "old"));
+        Thread.sleep(5);
+        assertEquals(new CrawlResult("new", "second"), cache.get(VIEW, "second", () -> "new"));
+    }
+
+    /**
+     * Test that invalidating an endpoint of a server forces all views of that server (only) to be crawled again.
+     */
+    @Test
+    public void invalidatesResultsOfServer() {
+        var cache = cache(300);
+        var otherView = "http://other-server:8080/kbo/by-time";
+        cache.get(VIEW, "first", () -> "old");
+        cache.get(VIEW, "graphs", "first", () -> "old");
+        cache.get(otherView, "first", () -> "other");
+        cache.invalidate("http://ldes-server:8080/kbo");
+        assertEquals(new CrawlResult("new", "second"), cache.get(VIEW, "second", () -> "new"));
+        assertEquals(new CrawlResult("new", "second"), cache.get(VIEW, "graphs", "second", () -> "new"));
+        assertEquals(new CrawlResult("other", "first"), cache.get(otherView, "second", () -> "unexpected"));
+    }
+
+    /**
+     * Test that the result of a crawl during which the server's data changed is not cached.
+     */
+    @Test
+    public void skipsResultsOfInvalidatedCrawls() {
+        var cache = cache(300);
+        assertEquals(new CrawlResult("stale", "first"), cache.get(VIEW, "first", () -> {
+            cache.invalidate(VIEW);
+            return "stale";
+        }));
+        assertEquals(new CrawlResult("new", "second"), cache.get(VIEW, "second", () -> "new"));
+    }
+
+    private static CrawlResultCache cache(long ttlSeconds) {
+        var cache = new CrawlResultCache();
+        ReflectionTestUtils.setField(cache, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(cache, "maxEntries", 16);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 256L);
+        return cache;
+    }
+
+}
@@ -0,0 +1,83 @@
+package be.vlaanderen.ldes.handlers;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the spatial index of member geometries.
+ */
+public class GeospatialContainmentTest {
+
+    private static final String SQUARE = "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))";
+
+    /**
+     * Test that only the geometries inside a polygon are contained (not those on its boundary or outside it).
+     */
+    @Test
+    public void findsContainedGeometries() {
+        var containment = GeospatialContainment.of(List.of(
+                "POINT (5 5)",
+                "POINT (10 5)",
+                "POINT (15 5)",
+                "LINESTRING (1 1, 9 9)",
+                "LINESTRING (5 5, 15 5)",
+                "POLYGON ((2 2, 4 2, 4 4, 2 4, 2 2))"));
+        assertEquals(Set.of("POINT (5 5)", "LINESTRING (1 1, 9 9)", "POLYGON ((2 2, 4 2, 4 4, 2 4, 2 2))"), containment.containedBy(SQUARE));
+    }
+
+    /**
+     * Test that a geometry whose envelope is inside the polygon but that lies outside it is not contained.
+     */
+    @Test
+    public void checksExactContainment() {
+        var triangle = "POLYGON ((0 0, 10 0, 0 10, 0 0))";
+        var containment = GeospatialContainment.of(List.of("POINT (2 2)", "POINT (8 8)"));
+        assertEquals(Set.of("POINT (2 2)"), containment.containedBy(triangle));
+    }
+
+    /**
+     * Test that values that cannot be parsed are skipped and that a missing or invalid geometry contains nothing.
+     */
+    @Test
+    public void ignoresInvalidValues() {
+        var containment = GeospatialContainment.of(List.of("POINT (5 5)", "not a geometry"));
+        assertEquals(Set.of("POINT (5 5)"), containment.containedBy(SQUARE));
+        assertTrue(containment.containedBy(null).isEmpty());
+        assertTrue(containment.containedBy("POLYGON (oops)").isEmpty());
+    }
+
+    /**
+     * Test that the index finds the same geometries as checking every value against the polygon.
+     */
+    @Test
+    public void matchesPairwiseContainment() throws ParseException {
+        var reader = new WKTReader();
+        var random = new Random(42);
+        var values = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            values.add(String.format("POINT (%s %s)", random.nextInt(40) - 10, random.nextInt(40) - 10));
+        }
+        var polygons = List.of(SQUARE, "POLYGON ((-5 -5, 20 -5, 20 3, -5 3, -5 -5))", "POLYGON ((0 0, 25 0, 0 25, 0 0))");
+        var containment = GeospatialContainment.of(values);
+        for (var polygon : polygons) {
+            var geometry = reader.read(polygon);
+            var expected = new HashSet<String>();
+            for (var value : values) {
+                if (geometry.contains(reader.read(value))) {
+                    expected.add(value);
+                }
+            }
+            assertEquals(expected, containment.containedBy(polygon), polygon);
+        }
+    }
+
+}
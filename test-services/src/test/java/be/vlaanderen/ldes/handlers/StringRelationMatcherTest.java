@@ -0,0 +1,158 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.handlers.RelationStringValidationHandler.RelationData;
+import be.vlaanderen.ldes.handlers.RelationStringValidationHandler.RelationType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the single-pass matching of prefix, substring and suffix relation values.
+ */
+public class StringRelationMatcherTest {
+
+    /**
+     * Test that substrings are found after a mismatch through the failure links, including substrings that end inside
+     * another one.
+     */
+    @Test
+    public void followsFailureLinks() {
+        var patterns = List.of("he", "she", "his", "hers");
+        var matches = new StringRelationMatcher(List.of(), patterns, List.of()).match("ushers");
+        assertTrue(matches.contains("she"));
+        assertTrue(matches.contains("he"));
+        assertTrue(matches.contains("hers"));
+        assertFalse(matches.contains("his"));
+    }
+
+    /**
+     * Test that the relation values ending at a node's longest proper suffix are reported with its own.
+     */
+    @Test
+    public void mergesOutputs() {
+        var patterns = List.of("abcd", "bcd", "cd", "d", "bc");
+        var matcher = new StringRelationMatcher(List.of(), patterns, List.of());
+        var matches = matcher.match("xabcd");
+        for (var pattern : patterns) {
+            assertTrue(matches.contains(pattern), pattern);
+        }
+        matches = matcher.match("bcx");
+        assertTrue(matches.contains("bc"));
+        assertFalse(matches.contains("cd"));
+        assertFalse(matches.contains("d"));
+    }
+
+    /**
+     * Test that every value starts with, contains and ends with the empty relation value.
+     */
+    @Test
+    public void matchesEmptyValue() {
+        var matcher = new StringRelationMatcher(List.of(""), List.of(""), List.of(""));
+        for (var value : List.of("", "a", "abc")) {
+            var matches = matcher.match(value);
+            assertTrue(matches.startsWith(""));
+            assertTrue(matches.contains(""));
+            assertTrue(matches.endsWith(""));
+        }
+    }
+
+    /**
+     * Test that relation values provided more than once are matched as one.
+     */
+    @Test
+    public void ignoresDuplicateValues() {
+        var matcher = new StringRelationMatcher(List.of("ab", "ab", "a"), List.of("b", "b"), List.of("b", "ab", "b"));
+        var matches = matcher.match("ab");
+        assertTrue(matches.startsWith("ab"));
+        assertTrue(matches.startsWith("a"));
+        assertTrue(matches.contains("b"));
+        assertTrue(matches.endsWith("b"));
+        assertTrue(matches.endsWith("ab"));
+        matches = matcher.match("ba");
+        assertFalse(matches.startsWith("ab"));
+        assertFalse(matches.startsWith("a"));
+        assertTrue(matches.contains("b"));
+        assertFalse(matches.endsWith("b"));
+    }
+
+    /**
+     * Test overlapping prefixes and suffixes, where one relation value extends another, and that prefix, substring and
+     * suffix relation values are matched independently.
+     */
+    @Test
+    public void matchesOverlappingValues() {
+        var matcher = new StringRelationMatcher(List.of("a", "aa", "aaa"), List.of("aa"), List.of("a", "ba", "aba"));
+        var matches = matcher.match("aaba");
+        assertTrue(matches.startsWith("a"));
+        assertTrue(matches.startsWith("aa"));
+        assertFalse(matches.startsWith("aaa"));
+        assertTrue(matches.contains("aa"));
+        assertTrue(matches.endsWith("a"));
+        assertTrue(matches.endsWith("ba"));
+        assertTrue(matches.endsWith("aba"));
+        matches = matcher.match("a");
+        assertTrue(matches.startsWith("a"));
+        assertFalse(matches.startsWith("aa"));
+        assertFalse(matches.contains("aa"));
+        assertTrue(matches.endsWith("a"));
+        assertFalse(matches.endsWith("ba"));
+    }
+
+    /**
+     * Test that values unknown to the matcher are rejected.
+     */
+    @Test
+    public void rejectsUnknownValues() {
+        var matches = new StringRelationMatcher(List.of("a"), List.of(), List.of()).match("a");
+        assertThrows(IllegalArgumentException.class, () -> matches.contains("a"));
+        assertThrows(IllegalArgumentException.class, () -> matches.startsWith("b"));
+    }
+
+    /**
+     * Test that the relation checks of the validation handler agree with the former checks on the member values
+     * (startsWith, contains and endsWith) for random values over a small alphabet.
+     */
+    @Test
+    public void matchesFormerChecks() {
+        var random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            var relations = new ArrayList<RelationData>();
+            for (int i = random.nextInt(10); i >= 0; i--) {
+                var relationType = List.of(RelationType.PrefixRelation, RelationType.SubstringRelation, RelationType.SuffixRelation).get(random.nextInt(3));
+                relations.add(new RelationData("page", relationType, randomString(random, 4), "path", "related"));
+            }
+            var matcher = new StringRelationMatcher(valuesOf(relations, RelationType.PrefixRelation), valuesOf(relations, RelationType.SubstringRelation), valuesOf(relations, RelationType.SuffixRelation));
+            for (int i = 0; i < 50; i++) {
+                var memberValue = randomString(random, 8);
+                var valueMatches = Map.of(memberValue, matcher.match(memberValue));
+                for (var relation : relations) {
+                    var expected = switch (relation.relationType()) {
+                        case PrefixRelation -> memberValue.startsWith(relation.relationValue());
+                        case SubstringRelation -> memberValue.contains(relation.relationValue());
+                        case SuffixRelation -> memberValue.endsWith(relation.relationValue());
+                        default -> throw new IllegalStateException();
+                    };
+                    assertEquals(expected, RelationStringValidationHandler.satisfies(relation, memberValue, valueMatches), relation + " " + memberValue);
+                }
+            }
+        }
+    }
+
+    private static List<String> valuesOf(List<RelationData> relations, RelationType relationType) {
+        return relations.stream().filter(relation -> relation.relationType() == relationType).map(RelationData::relationValue).toList();
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        var builder = new StringBuilder();
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+
+}
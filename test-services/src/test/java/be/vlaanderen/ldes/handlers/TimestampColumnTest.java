@@ -0,0 +1,140 @@
+package be.vlaanderen.ldes.handlers;
+
+import be.vlaanderen.ldes.handlers.RelationTimestampValidationHandler.RelationData;
+import be.vlaanderen.ldes.handlers.RelationTimestampValidationHandler.RelationType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the decoded time-based member values and the ranges matching time-based relations.
+ */
+public class TimestampColumnTest {
+
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+    /**
+     * Test the decoding of the supported literals.
+     */
+    @Test
+    public void decodesLiterals() {
+        var instant = Instant.parse("2023-06-01T10:15:30.123456789Z");
+        var nanos = instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        assertEquals(nanos, TimestampColumn.decode("2023-06-01T10:15:30.123456789Z^^" + XSD + "dateTime"));
+        assertEquals(nanos, TimestampColumn.decode("2023-06-01T12:15:30.123456789+02:00^^" + XSD + "dateTimeStamp"));
+        // Missing offsets are UTC.
+        assertEquals(nanos, TimestampColumn.decode("2023-06-01T10:15:30.123456789^^" + XSD + "dateTime"));
+        assertEquals(Instant.parse("2023-06-01T00:00:00Z").getEpochSecond() * 1_000_000_000L, TimestampColumn.decode("2023-06-01^^" + XSD + "date"));
+        assertEquals(3_600_000_000_000L, TimestampColumn.decode("01:00:00^^" + XSD + "time"));
+    }
+
+    /**
+     * Test that unsupported literals are rejected.
+     */
+    @Test
+    public void rejectsUnsupportedLiterals() {
+        assertThrows(IllegalStateException.class, () -> TimestampColumn.decode("2023-06-01T10:15:30Z"));
+        assertThrows(IllegalStateException.class, () -> TimestampColumn.decode("2023^^" + XSD + "gYear"));
+        assertThrows(IllegalStateException.class, () -> TimestampColumn.decode("yesterday^^" + XSD + "dateTime"));
+        assertThrows(IllegalStateException.class, () -> TimestampColumn.decode("2300-01-01T00:00:00Z^^" + XSD + "dateTime"));
+        assertThrows(IllegalStateException.class, () -> TimestampColumn.decode(null));
+    }
+
+    /**
+     * Test the bounds around values, including runs of equal values and values outside the column.
+     */
+    @Test
+    public void findsBounds() {
+        var column = column(Map.of("a", List.of(5L), "b", List.of(1L, 5L), "c", List.of(3L), "d", List.of(5L, 9L)), List.of("a", "b", "c", "d"));
+        // Sorted: 1, 3, 5, 5, 5, 9.
+        assertEquals(6, column.size());
+        assertEquals(0, column.lowerBound(nanos(0)));
+        assertEquals(2, column.lowerBound(nanos(5)));
+        assertEquals(5, column.upperBound(nanos(5)));
+        assertEquals(2, column.lowerBound(nanos(4)));
+        assertEquals(2, column.upperBound(nanos(4)));
+        assertEquals(6, column.lowerBound(nanos(10)));
+        assertEquals(6, column.upperBound(nanos(9)));
+    }
+
+    /**
+     * Test that the values of a member are selected by their sorted position, in the member's order.
+     */
+    @Test
+    public void selectsMemberValuesWithinRange() {
+        var column = column(Map.of("a", List.of(9L, 1L), "b", List.of()), List.of("a", "b"));
+        assertEquals(List.of(literal(9), literal(1)), column.values(0));
+        assertTrue(column.values(1).isEmpty());
+        assertEquals(List.of(literal(1)), column.valuesWithin(0, 0, 1));
+        assertEquals(List.of(literal(9)), column.valuesWithin(0, 1, 2));
+        assertTrue(column.valuesWithin(0, 1, 1).isEmpty());
+    }
+
+    /**
+     * Test that the matching ranges accept the same values as the former comparisons of the relation's value with the
+     * member values, where (equal or) greater than relations accept values before (or at) the relation's value and
+     * (equal or) less than relations values after (or at) it.
+     */
+    @Test
+    public void matchesFormerComparisons() {
+        var random = new Random(42);
+        var values = new HashMap<String, List<Long>>();
+        var members = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            var member = "member" + i;
+            members.add(member);
+            var memberValues = new ArrayList<Long>();
+            for (int j = random.nextInt(3); j > 0; j--) {
+                memberValues.add((long) random.nextInt(50));
+            }
+            values.put(member, memberValues);
+        }
+        var column = column(values, members);
+        for (var relationType : RelationType.values()) {
+            for (long relationValue = -1; relationValue <= 50; relationValue++) {
+                var relation = new RelationData("page", relationType, literal(relationValue), "path", "related");
+                var range = RelationTimestampValidationHandler.getMatchingRange(relation, column);
+                for (int i = 0; i < members.size(); i++) {
+                    var expected = new ArrayList<String>();
+                    for (var value : values.get(members.get(i))) {
+                        var comparison = Long.compare(relationValue, value);
+                        var accepted = switch (relationType) {
+                            case EqualToRelation -> comparison == 0;
+                            case GreaterThanRelation -> comparison > 0;
+                            case GreaterThanOrEqualToRelation -> comparison >= 0;
+                            case LessThanRelation -> comparison < 0;
+                            case LessThanOrEqualToRelation -> comparison <= 0;
+                        };
+                        if (accepted) {
+                            expected.add(literal(value));
+                        }
+                    }
+                    assertEquals(expected, column.valuesWithin(i, range.from(), range.to()), relationType + " " + relationValue);
+                }
+            }
+        }
+    }
+
+    private static TimestampColumn column(Map<String, List<Long>> values, List<String> members) {
+        return TimestampColumn.of(members, member -> values.get(member).stream().map(TimestampColumnTest::literal).toList());
+    }
+
+    private static long nanos(long seconds) {
+        return TimestampColumn.decode(literal(seconds));
+    }
+
+    /**
+     * Create an xsd:dateTime literal a number of seconds after the epoch.
+     */
+    private static String literal(long seconds) {
+        return Instant.ofEpochSecond(seconds) + "^^" + XSD + "dateTime";
+    }
+
+}
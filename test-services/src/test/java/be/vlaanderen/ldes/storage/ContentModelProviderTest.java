@@ -0,0 +1,117 @@
+package be.vlaanderen.ldes.storage;
+
+import org.apache.jena.query.Dataset;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the cache of parsed inline content.
+ */
+public class ContentModelProviderTest {
+
+    private static final String N_TRIPLES = "application/n-triples";
+
+    /**
+     * Test that the same content is parsed once, and that the content type is part of the cache key.
+     */
+    @Test
+    public void reusesParsedContent() {
+        var provider = provider(10);
+        var content = triples("a", 2);
+        assertSame(dataset(provider, content), dataset(provider, content));
+        assertNotSame(dataset(provider, content), dataset(provider, content, "text/turtle"));
+        try (var model = provider.open(content, N_TRIPLES)) {
+            assertEquals(2, model.model().size());
+            assertFalse(model.isTransactional());
+        }
+    }
+
+    /**
+     * Test that the least recently used contents are evicted once the cached contents hold more than the maximum
+     * number of triples.
+     */
+    @Test
+    public void evictsLeastRecentlyUsedContent() {
+        var provider = provider(5);
+        var first = triples("a", 2);
+        var second = triples("b", 2);
+        var third = triples("c", 2);
+        var firstDataset = dataset(provider, first);
+        var secondDataset = dataset(provider, second);
+        // Use the first content again, so that the second one is the least recently used.
+        assertSame(firstDataset, dataset(provider, first));
+        var thirdDataset = dataset(provider, third);
+        assertSame(firstDataset, dataset(provider, first));
+        assertSame(thirdDataset, dataset(provider, third));
+        assertNotSame(secondDataset, dataset(provider, second));
+    }
+
+    /**
+     * Test that the eviction is weighted by the number of triples of the contents.
+     */
+    @Test
+    public void evictsByTripleCount() {
+        var provider = provider(5);
+        var small = triples("a", 1);
+        var other = triples("b", 1);
+        var large = triples("c", 4);
+        var smallDataset = dataset(provider, small);
+        var otherDataset = dataset(provider, other);
+        // 1 + 1 + 4 triples exceed the maximum, evicting the first content only.
+        var largeDataset = dataset(provider, large);
+        assertSame(otherDataset, dataset(provider, other));
+        assertSame(largeDataset, dataset(provider, large));
+        assertNotSame(smallDataset, dataset(provider, small));
+    }
+
+    /**
+     * Test that content exceeding the cache on its own is not cached, and does not evict the cached contents.
+     */
+    @Test
+    public void skipsOversizedContent() {
+        var provider = provider(5);
+        var small = triples("a", 2);
+        var oversized = triples("b", 6);
+        var smallDataset = dataset(provider, small);
+        assertNotSame(dataset(provider, oversized), dataset(provider, oversized));
+        assertSame(smallDataset, dataset(provider, small));
+    }
+
+    /**
+     * Test that unsupported content types are rejected.
+     */
+    @Test
+    public void rejectsUnsupportedContentType() {
+        assertThrows(IllegalArgumentException.class, () -> provider(5).open(triples("a", 1), "application/x-unknown"));
+    }
+
+    private static ContentModelProvider provider(long maxTriples) {
+        var provider = new ContentModelProvider();
+        ReflectionTestUtils.setField(provider, "maxTriples", maxTriples);
+        return provider;
+    }
+
+    private static Dataset dataset(ContentModelProvider provider, String content) {
+        return dataset(provider, content, N_TRIPLES);
+    }
+
+    private static Dataset dataset(ContentModelProvider provider, String content, String contentType) {
+        try (var model = provider.open(content, contentType)) {
+            return model.dataset();
+        }
+    }
+
+    /**
+     * Create N-Triples content with a number of distinct triples about a subject.
+     */
+    private static String triples(String subject, int count) {
+        var builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(String.format("<http://example.org/%s> <http://example.org/p> \"%s\" .%n", subject, i));
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,72 @@
+package be.vlaanderen.ldes.storage;
+
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.system.Txn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the disk-backed crawl datasets.
+ */
+public class DatasetStoreTest {
+
+    /**
+     * Test that creating a dataset removes the expired datasets, including ones opened since startup.
+     */
+    @Test
+    public void removesExpiredDatasetsOnCreate(@TempDir Path directory) throws IOException {
+        var store = store(directory);
+        var expired = store.create("expired");
+        Txn.executeWrite(expired, () -> expired.getDefaultModel().add(ResourceFactory.createResource("http://example.org/s"), ResourceFactory.createProperty("http://example.org/p"), "o"));
+        var recent = store.create("recent");
+        Txn.executeWrite(recent, () -> recent.getDefaultModel().add(ResourceFactory.createResource("http://example.org/s"), ResourceFactory.createProperty("http://example.org/p"), "o"));
+        setLastModified(directory.resolve("expired"), Instant.now().minus(Duration.ofHours(2)));
+        // The next purge is only due an hour after the last one.
+        ReflectionTestUtils.setField(store, "lastPurge", Instant.EPOCH);
+        store.create("new");
+        assertFalse(Files.exists(directory.resolve("expired")));
+        assertTrue(Files.isDirectory(directory.resolve("recent")));
+        assertTrue(Files.isDirectory(directory.resolve("new")));
+        assertThrows(IllegalArgumentException.class, () -> store.open(DatasetStore.handleOf("expired")));
+        assertEquals(1, Txn.calculateRead(recent, () -> recent.getDefaultModel().size()));
+    }
+
+    /**
+     * Test that datasets are not checked for expiry more than once an hour.
+     */
+    @Test
+    public void purgesAtMostHourly(@TempDir Path directory) throws IOException {
+        var store = store(directory);
+        store.create("first");
+        setLastModified(directory.resolve("first"), Instant.now().minus(Duration.ofHours(2)));
+        store.create("second");
+        assertTrue(Files.isDirectory(directory.resolve("first")));
+    }
+
+    private static DatasetStore store(Path directory) {
+        var store = new DatasetStore();
+        ReflectionTestUtils.setField(store, "directoryPath", directory.toString());
+        ReflectionTestUtils.setField(store, "retentionHours", 1L);
+        return store;
+    }
+
+    private static void setLastModified(Path dataset, Instant time) throws IOException {
+        try (Stream<Path> files = Files.walk(dataset)) {
+            for (var file : files.toList()) {
+                Files.setLastModifiedTime(file, FileTime.from(time));
+            }
+        }
+    }
+
+}